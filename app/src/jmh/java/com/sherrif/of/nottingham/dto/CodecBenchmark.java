@@ -0,0 +1,103 @@
+package com.sherrif.of.nottingham.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of the {@link TaglyBinary} wire format against Jackson JSON, for a matched
+ * order and a quote.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private EquityOrder order;
+    private StockQuote quote;
+    private byte[] orderJson;
+    private byte[] orderBinary;
+    private byte[] quoteJson;
+    private byte[] quoteBinary;
+
+    @Setup
+    public void setUp() throws IOException {
+        order = new EquityOrder();
+        order.setOrderId(1L << 22 | 42);
+        order.setTimestamp(System.currentTimeMillis());
+        order.setTicker("GME");
+        order.setRegion("us-east");
+        order.setSide("BUY");
+        order.setPrice(225.5);
+        order.setUnits(100);
+        order.setFills(List.of(new Fill(17, 225.25, 60), new Fill(18, 225.5, 30)));
+        order.setFilledUnits(90);
+        order.setRemainingUnits(10);
+        quote = new StockQuote("GME", 225.5, System.currentTimeMillis());
+
+        orderJson = objectMapper.writeValueAsBytes(order);
+        orderBinary = TaglyBinary.encode(order);
+        quoteJson = objectMapper.writeValueAsBytes(quote);
+        quoteBinary = TaglyBinary.encode(quote);
+        System.out.printf("%nEquityOrder: %d bytes JSON, %d bytes binary; StockQuote: %d bytes JSON, %d bytes binary%n",
+                orderJson.length, orderBinary.length, quoteJson.length, quoteBinary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeOrderJson() throws IOException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public byte[] encodeOrderBinary() {
+        return TaglyBinary.encode(order);
+    }
+
+    @Benchmark
+    public EquityOrder decodeOrderJson() throws IOException {
+        return objectMapper.readValue(orderJson, EquityOrder.class);
+    }
+
+    @Benchmark
+    public Object decodeOrderBinary() {
+        return TaglyBinary.decode(ByteBuffer.wrap(orderBinary), EquityOrder.class);
+    }
+
+    @Benchmark
+    public byte[] encodeQuoteJson() throws IOException {
+        return objectMapper.writeValueAsBytes(quote);
+    }
+
+    @Benchmark
+    public byte[] encodeQuoteBinary() {
+        return TaglyBinary.encode(quote);
+    }
+
+    @Benchmark
+    public StockQuote decodeQuoteJson() throws IOException {
+        return objectMapper.readValue(quoteJson, StockQuote.class);
+    }
+
+    @Benchmark
+    public Object decodeQuoteBinary() {
+        return TaglyBinary.decode(ByteBuffer.wrap(quoteBinary), StockQuote.class);
+    }
+}
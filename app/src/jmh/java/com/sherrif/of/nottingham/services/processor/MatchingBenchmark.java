@@ -0,0 +1,87 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order matching throughput in orders/sec, for a single {@link OrderBook} on the calling thread and
+ * through the {@link MatchingEngine} across several tickers. Prices are drawn around one mid price,
+ * so orders both cross and rest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchingBenchmark {
+
+    private static final long MID = OrderBook.toTicks(100.0);
+    // orders submitted to the engine per invocation, waited for together
+    private static final int ENGINE_ORDERS = 10_000;
+
+    @Param({"8"})
+    public int tickers;
+
+    @Param({"4"})
+    public int shards;
+
+    private final Random random = new Random(42);
+    private final OrderBook.Fills fills = new OrderBook.Fills();
+    private OrderBook book;
+    private MatchingEngine engine;
+    private String[] tickerNames;
+    private long nextOrderId;
+
+    @Setup
+    public void setUp() {
+        book = new OrderBook("BENCH");
+        engine = new MatchingEngine(shards, new OrderJournal(null, 0, OrderJournal.Durability.OFF, 0));
+        tickerNames = new String[tickers];
+        for (int i = 0; i < tickers; i++) {
+            tickerNames[i] = "T" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public int orderBook() {
+        return book.match(nextOrderId++, random.nextBoolean(), MID + random.nextInt(201) - 100, 1 + random.nextInt(100), fills);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENGINE_ORDERS)
+    public void matchingEngine() {
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[ENGINE_ORDERS];
+        for (int i = 0; i < ENGINE_ORDERS; i++) {
+            EquityOrder order = new EquityOrder();
+            order.setOrderId(nextOrderId++);
+            order.setTicker(tickerNames[random.nextInt(tickers)]);
+            order.setSide(random.nextBoolean() ? MatchingEngine.BUY : MatchingEngine.SELL);
+            order.setPrice(OrderBook.toPrice(MID + random.nextInt(201) - 100));
+            order.setUnits(1 + random.nextInt(100));
+            pending[i] = engine.submit(order);
+        }
+        CompletableFuture.allOf(pending).join();
+    }
+}
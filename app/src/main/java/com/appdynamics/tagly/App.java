@@ -3,19 +3,26 @@
  */
 package com.appdynamics.tagly;
 
+import com.sherrif.of.nottingham.app.Telemetry;
+import com.sherrif.of.nottingham.dto.Symbol;
+import com.sherrif.of.nottingham.dto.SymbolTable;
+import com.sherrif.of.nottingham.metrics.BoundCounters;
+import com.sherrif.of.nottingham.metrics.LatencyRecorder;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.metrics.*;
-import io.opentelemetry.api.metrics.common.Labels;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Scope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.StandardEnvironment;
 
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 public class App {
     public static final Logger LOGGER = LoggerFactory.getLogger(App.class);
+    private static final int MAX_METRIC_SERIES = 100;
     public String getGreeting() {return "Hello World";}
     public static void main(String[] args) throws InterruptedException {
         // this will make sure that a proper service.name attribute is set on all the spans/metrics.
@@ -24,32 +31,28 @@ public class App {
         System.setProperty("otel.resource.attributes", "service.name=OtlpExporterExample");
 
         // it is important to initialize your SDK as early as possible in your application's lifecycle
-        OpenTelemetry openTelemetry = Configuration.initOpenTelemetry();
-        // note: currently metrics is alpha and the configuration story is still unfolding. This will
-        // definitely change in the future.
-        MeterProvider meterProvider = Configuration.initOpenTelemetryMetrics();
+        Telemetry telemetry = Telemetry.start(new StandardEnvironment());
+        OpenTelemetry openTelemetry = telemetry.getOpenTelemetry();
+        MeterProvider meterProvider = telemetry.getMeterProvider();
 
         Tracer tracer = openTelemetry.getTracer("io.opentelemetry.example");
 
         Meter meter = meterProvider.get("io.opentelemetry.example");
 
         // Calls per minute
-        LongCounter callsPerMinute = meter
+        BoundCounters callsPerMinute = new BoundCounters(meter
                 .longCounterBuilder("calls.per.minute")
                 .setDescription("Calls Per Minute")
-                .setUnit("1").build();
+                .setUnit("1").build(), MAX_METRIC_SERIES);
 
         // Errors per minute
-        LongCounter errorsPerMinute = meter
+        BoundCounters errorsPerMinute = new BoundCounters(meter
                 .longCounterBuilder("errors.per.minute")
                 .setDescription("Errors Per Minute")
-                .setUnit("1").build();
+                .setUnit("1").build(), MAX_METRIC_SERIES);
 
-        // Request Latency
-        LongCounter requestLatency = meter
-                .longCounterBuilder("request.latency.ms")
-                .setDescription("Latency in ms")
-                .setUnit("ms").build();
+        // Request Latency percentiles
+        LatencyRecorder requestLatency = new LatencyRecorder(meter, "request.latency", "Latency in us");
 
         Random rand = new Random();
         int cnt = 0;
@@ -58,18 +61,17 @@ public class App {
             try (Scope ignored = parentSpan.makeCurrent()) {
                 String stock = getStock(cnt);
                 String region = getRegion(cnt);
+                Symbol stockSymbol = SymbolTable.TICKERS.intern(stock);
+                Symbol regionSymbol = SymbolTable.REGIONS.intern(region);
 
                 // CPM
-                BoundLongCounter cpmRecorder = callsPerMinute.bind(Labels.of("stock", stock, "region", region));
-                cpmRecorder.add(getCallsPerMinute(stock, region));
+                callsPerMinute.add(getCallsPerMinute(stock, region), stockSymbol, regionSymbol);
 
                 // EPM
-                BoundLongCounter epmRecorder = errorsPerMinute.bind(Labels.of("stock", stock, "region", region));
-                epmRecorder.add(getErrorsPerMinute(stock, region));
+                errorsPerMinute.add(getErrorsPerMinute(stock, region), stockSymbol, regionSymbol);
 
                 // Latency
-                BoundLongCounter latencyRecorder = requestLatency.bind(Labels.of("stock", stock, "region", region));
-                latencyRecorder.add(getLatency(stock, region));
+                requestLatency.record("parentSpan", TimeUnit.MILLISECONDS.toNanos(getLatency(stock, region)));
 
                 parentSpan.setAttribute("good", "true");
                 parentSpan.setAttribute("exampleNumber", rand.nextInt());
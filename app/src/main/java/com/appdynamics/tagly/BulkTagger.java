@@ -0,0 +1,192 @@
+package com.appdynamics.tagly;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sherrif.of.nottingham.metrics.BoundCounters;
+import com.sherrif.of.nottingham.metrics.HeavyHitters;
+import com.sherrif.of.nottingham.services.order.Gazetteer;
+import com.sherrif.of.nottingham.services.order.TagGenerator;
+import com.sherrif.of.nottingham.services.order.TaggingEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline tagging of a JSONL dump, one JSON object per line.
+ *
+ * <pre>
+ * java -cp app-all.jar com.appdynamics.tagly.BulkTagger input.jsonl output.jsonl \
+ *     [--workers N] [--id-field request_id] [--text-field body] [--ner] [--top 100]
+ * </pre>
+ *
+ * Every input record produces a {@code {"id": ..., "tags": [...]}} line in the output, followed
+ * by one final {@code {"records": ..., "failed": ..., "mentions": {...}}} summary line. The mentions
+ * are estimated counts of the {@code --top} most mentioned organizations, largest first, with the
+ * long tail folded into {@code "other"}. The input is read through a memory-mapped window and
+ * handed to the workers through a bounded queue, and the mentions are counted in a fixed-size sketch,
+ * so memory use depends on the number of workers, never on the input size or the number of distinct
+ * organizations.
+ */
+public class BulkTagger {
+    public static final Logger LOGGER = LoggerFactory.getLogger(BulkTagger.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final TagGenerator tagGenerator;
+    private final String idField;
+    private final String textField;
+    private final boolean forceNer;
+    private final int topMentions;
+    private final HeavyHitters mentions;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    BulkTagger(TagGenerator tagGenerator, String idField, String textField, boolean forceNer, int topMentions) {
+        this.tagGenerator = tagGenerator;
+        this.idField = idField;
+        this.textField = textField;
+        this.forceNer = forceNer;
+        this.topMentions = topMentions;
+        // track well past the reported top, so the keys that make it are rarely ones that just came in
+        this.mentions = new HeavyHitters(topMentions * 10);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BulkTagger <input.jsonl> <output.jsonl> [--workers N] "
+                    + "[--id-field name] [--text-field name] [--ner] [--top N]");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        int workers = Runtime.getRuntime().availableProcessors();
+        String idField = "request_id";
+        String textField = "body";
+        boolean forceNer = false;
+        int topMentions = 100;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--id-field":
+                    idField = args[++i];
+                    break;
+                case "--text-field":
+                    textField = args[++i];
+                    break;
+                case "--ner":
+                    forceNer = true;
+                    break;
+                case "--top":
+                    topMentions = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        TaggingEngine taggingEngine = new TaggingEngine();
+        TagGenerator tagGenerator = new TagGenerator(taggingEngine, new Gazetteer(null), 10000, Duration.ofHours(1));
+        new BulkTagger(tagGenerator, idField, textField, forceNer, topMentions).run(input, output, workers);
+    }
+
+    void run(Path input, Path output, int workers) throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        // bounded hand-off: when the workers fall behind, the reader tags on its own thread instead of queueing
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * 64),
+                new ThreadFactoryBuilder().setNameFormat("bulk-tagger-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("bulk-tagger-progress").setDaemon(true).build());
+
+        try (MappedLineReader reader = new MappedLineReader(input);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            progress.scheduleAtFixedRate(() -> report(startTime, reader), 5, 5, TimeUnit.SECONDS);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String record = line;
+                pool.execute(() -> tag(record, writer));
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            writeSummary(writer);
+            report(startTime, reader);
+        } finally {
+            progress.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    private void tag(String line, Writer writer) {
+        try {
+            JsonNode record = MAPPER.readTree(line);
+            List<String> tags = tagGenerator.generateTagsFromUnstructuredInput(
+                    record.path(textField).asText(""), TagGenerator.ORGANIZATION, forceNer);
+            for (String tag : tags) {
+                mentions.add(tag, 1);
+            }
+            ObjectNode result = MAPPER.createObjectNode();
+            result.set("id", record.path(idField));
+            ArrayNode tagArray = result.putArray("tags");
+            tags.forEach(tagArray::add);
+            String json = MAPPER.writeValueAsString(result);
+            synchronized (writer) {
+                writer.write(json);
+                writer.write('\n');
+            }
+            records.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOGGER.warn("Skipping unreadable record {}", String.valueOf(e));
+        }
+    }
+
+    private void writeSummary(Writer writer) throws IOException {
+        ObjectNode summary = MAPPER.createObjectNode();
+        summary.put("records", records.get());
+        summary.put("failed", failed.get());
+        ObjectNode counts = summary.putObject("mentions");
+        long top = 0;
+        for (Map.Entry<String, Long> mention : mentions.top(topMentions).entrySet()) {
+            counts.put(mention.getKey(), mention.getValue());
+            top += mention.getValue();
+        }
+        counts.put(BoundCounters.OVERFLOW, Math.max(0, mentions.total() - top));
+        synchronized (writer) {
+            writer.write(MAPPER.writeValueAsString(summary));
+            writer.write('\n');
+        }
+    }
+
+    private void report(long startTime, MappedLineReader reader) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+        long done = records.get();
+        LOGGER.info("Tagged {} records ({} failed), {} records/sec, {}% of input read",
+                done, failed.get(), String.format("%.1f", done / seconds),
+                reader.size() == 0 ? 100 : reader.position() * 100 / reader.size());
+    }
+}
@@ -0,0 +1,101 @@
+package com.appdynamics.tagly;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads UTF-8 lines from a file through a sliding memory-mapped window, so files larger than the
+ * heap (or than 2 GB) can be streamed without copying them through a stream buffer first.
+ */
+class MappedLineReader implements Closeable {
+
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private byte[] lineBuffer = new byte[8192];
+
+    MappedLineReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedLineReader(Path path, int windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long position() {
+        return position;
+    }
+
+    /**
+     * @return the next line without its terminator, or null at the end of the file
+     */
+    String readLine() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        while (true) {
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                map(position);
+            }
+            int offset = (int) (position - windowStart);
+            int limit = window.limit();
+            for (int i = offset; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    position = windowStart + i + 1;
+                    return decode(offset, i);
+                }
+            }
+            if (windowStart + limit >= size) {
+                // last line without a trailing newline
+                position = size;
+                return decode(offset, limit);
+            }
+            if (offset == 0) {
+                throw new IOException("Line at offset " + position + " is longer than the " + windowSize + " byte window");
+            }
+            // the line straddles the window, slide the window to its start and rescan
+            map(position);
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+    }
+
+    private String decode(int from, int to) {
+        if (to > from && window.get(to - 1) == '\r') {
+            to--;
+        }
+        int length = to - from;
+        if (lineBuffer.length < length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            lineBuffer[i] = window.get(from + i);
+        }
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
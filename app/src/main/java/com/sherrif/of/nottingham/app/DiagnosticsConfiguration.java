@@ -0,0 +1,24 @@
+package com.sherrif.of.nottingham.app;
+
+import com.sherrif.of.nottingham.diagnostics.ErrorDiagnostics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * The {@link ErrorDiagnostics} shared by every application, configured by {@code tagly.diagnostics.*}.
+ */
+@Configuration
+public class DiagnosticsConfiguration {
+
+    @Bean
+    ErrorDiagnostics errorDiagnostics(@Value("${tagly.diagnostics.captures-per-fingerprint:5}") int capturesPerFingerprint,
+                                      @Value("${tagly.diagnostics.maximum-captures:50}") int maximumCaptures,
+                                      @Value("${tagly.diagnostics.window-seconds:60}") long windowSeconds,
+                                      @Value("${tagly.diagnostics.maximum-fingerprints:1000}") long maximumFingerprints) {
+        return new ErrorDiagnostics(capturesPerFingerprint, maximumCaptures, Duration.ofSeconds(windowSeconds),
+                maximumFingerprints);
+    }
+}
@@ -1,15 +1,84 @@
 package com.sherrif.of.nottingham.app;
 
+import com.sherrif.of.nottingham.dto.TaglyBinaryHttpMessageConverter;
+import com.sherrif.of.nottingham.services.processor.MatchingEngine;
+import com.sherrif.of.nottingham.services.processor.OrderIdAllocator;
+import com.sherrif.of.nottingham.services.processor.OrderJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
 
 @SpringBootApplication
 @ComponentScan({"com.sherrif.of.nottingham.services.processor"})
+@Import(DiagnosticsConfiguration.class)
 public class OrderProcessorApplication {
+
+    Logger logger = LoggerFactory.getLogger(OrderProcessorApplication.class);
+
     public static void main(String[] args) {
         // Set to process the spans with the LoggingSpanExporter
         System.setProperty("otel.resource.attributes", "service.name=OtlpExporterExample");
         SpringApplication.run(OrderProcessorApplication.class, args);
     }
+
+    @Bean
+    WebMvcConfigurer taglyBinaryConverter() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                // after Jackson, so clients that accept anything still get JSON
+                converters.add(new TaglyBinaryHttpMessageConverter());
+            }
+        };
+    }
+
+    @Bean
+    OrderIdAllocator orderIdAllocator(@Value("${tagly.orders.node-id:-1}") int nodeId,
+                                      @Value("${tagly.orders.maximum-clock-drift-ms:1000}") long maximumDriftMillis) {
+        if (nodeId < 0) {
+            // every instance must have its own node for IDs to be unique, and nothing derived from the host can promise that
+            throw new IllegalStateException("tagly.orders.node-id must be set to a node ID unique to this processor, 0-"
+                    + OrderIdAllocator.MAX_NODE_ID);
+        }
+        return new OrderIdAllocator(nodeId, maximumDriftMillis);
+    }
+
+    @Bean
+    OrderJournal orderJournal(@Value("${tagly.orders.journal.dir:journal}") String directory,
+                              @Value("${tagly.orders.journal.segment-bytes:67108864}") int segmentBytes,
+                              @Value("${tagly.orders.journal.durability:grouped}") String durability,
+                              @Value("${tagly.orders.journal.async-interval-ms:100}") long asyncIntervalMillis) {
+        return new OrderJournal(Paths.get(directory), segmentBytes, OrderJournal.Durability.parse(durability),
+                asyncIntervalMillis);
+    }
+
+    @Bean
+    MatchingEngine matchingEngine(@Value("${tagly.orders.matching.shards:4}") int shards,
+                                  OrderJournal orderJournal,
+                                  OrderIdAllocator orderIdAllocator) throws IOException {
+        MatchingEngine matchingEngine = new MatchingEngine(shards, orderJournal);
+        // rebuild the books from the journal before the first new order is accepted, and never reissue a replayed ID
+        orderJournal.open(order -> {
+            orderIdAllocator.advancePast(order.getOrderId());
+            matchingEngine.replay(order);
+        });
+        return matchingEngine;
+    }
+
+    @Bean
+    Telemetry telemetry(Environment environment) {
+        return Telemetry.start(environment);
+    }
 }
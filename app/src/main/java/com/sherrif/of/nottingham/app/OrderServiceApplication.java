@@ -1,15 +1,35 @@
 package com.sherrif.of.nottingham.app;
 
+import com.sherrif.of.nottingham.dto.TaglyBinary;
+import com.sherrif.of.nottingham.metrics.HeavyHitters;
+import com.sherrif.of.nottingham.services.order.BatchTagger;
+import com.sherrif.of.nottingham.services.order.BlockingDownstreamClient;
+import com.sherrif.of.nottingham.services.order.DownstreamClient;
+import com.sherrif.of.nottingham.services.order.Gazetteer;
+import com.sherrif.of.nottingham.services.order.IdempotencyStore;
+import com.sherrif.of.nottingham.services.order.OrderBatcher;
+import com.sherrif.of.nottingham.services.order.PooledHttpTransport;
+import com.sherrif.of.nottingham.services.order.QuoteCache;
+import com.sherrif.of.nottingham.services.order.ReactiveDownstreamClient;
+import com.sherrif.of.nottingham.services.order.ShoutOutQueue;
 import com.sherrif.of.nottingham.services.order.TagGenerator;
+import com.sherrif.of.nottingham.services.order.TaggingEngine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
 
 @SpringBootApplication
 @ComponentScan({"com.sherrif.of.nottingham.services.order"})
+@Import(DiagnosticsConfiguration.class)
 public class OrderServiceApplication {
 
 	public static void main(String[] args) {
@@ -19,13 +39,114 @@ public class OrderServiceApplication {
 	}
 
 	@Bean
-	public RestTemplate restTemplate(RestTemplateBuilder builder) {
-		return builder.build();
+	PooledHttpTransport orderProcessorTransport(Environment environment, RestTemplateBuilder restTemplateBuilder,
+												WebClient.Builder webClientBuilder) {
+		return new PooledHttpTransport("order-processor", environment, "http://order-processor:7071",
+				restTemplateBuilder, webClientBuilder);
 	}
 
 	@Bean
-	TagGenerator tagGenerator() {
-		return new TagGenerator();
+	PooledHttpTransport subscriptionServiceTransport(Environment environment, RestTemplateBuilder restTemplateBuilder,
+													 WebClient.Builder webClientBuilder) {
+		return new PooledHttpTransport("subscription-service", environment, "http://subscription-service:7072",
+				restTemplateBuilder, webClientBuilder);
 	}
 
+	@Bean
+	DownstreamClient downstreamClient(PooledHttpTransport orderProcessorTransport,
+									  PooledHttpTransport subscriptionServiceTransport,
+									  @Value("${tagly.downstream.mode:blocking}") String mode,
+									  @Value("${tagly.downstream.wire-format:json}") String wireFormat) {
+		MediaType contentType;
+		switch (wireFormat) {
+			case "json":
+				contentType = MediaType.APPLICATION_JSON;
+				break;
+			case "binary":
+				contentType = MediaType.parseMediaType(TaglyBinary.MEDIA_TYPE);
+				break;
+			default:
+				throw new IllegalArgumentException("tagly.downstream.wire-format must be json or binary, was " + wireFormat);
+		}
+		switch (mode) {
+			case "blocking":
+				return new BlockingDownstreamClient(
+						orderProcessorTransport.restTemplate(), orderProcessorTransport.getUrl(),
+						subscriptionServiceTransport.restTemplate(), subscriptionServiceTransport.getUrl(), contentType);
+			case "reactive":
+				return new ReactiveDownstreamClient(orderProcessorTransport.webClient(),
+						subscriptionServiceTransport.webClient(), contentType);
+			default:
+				throw new IllegalArgumentException("tagly.downstream.mode must be blocking or reactive, was " + mode);
+		}
+	}
+
+	@Bean
+	TaggingEngine taggingEngine() {
+		// load and warm the NER pipeline at startup instead of on the first shoutout
+		TaggingEngine taggingEngine = new TaggingEngine();
+		taggingEngine.warmUp(TagGenerator.text);
+		return taggingEngine;
+	}
+
+	@Bean
+	Gazetteer gazetteer(@Value("${tagly.tags.gazetteer.path:}") String path,
+						@Value("${tagly.tags.gazetteer.reload-interval-seconds:30}") long reloadIntervalSeconds) {
+		Gazetteer gazetteer = new Gazetteer(path);
+		gazetteer.watch(reloadIntervalSeconds);
+		return gazetteer;
+	}
+
+	@Bean
+	TagGenerator tagGenerator(TaggingEngine taggingEngine, Gazetteer gazetteer,
+							 @Value("${tagly.tags.cache.maximum-size:10000}") long maximumCacheSize,
+							 @Value("${tagly.tags.cache.ttl-seconds:600}") long cacheTtlSeconds) {
+		return new TagGenerator(taggingEngine, gazetteer, maximumCacheSize, Duration.ofSeconds(cacheTtlSeconds));
+	}
+
+	@Bean
+	BatchTagger batchTagger(TagGenerator tagGenerator,
+							@Value("${tagly.tags.batch.workers:4}") int workerCount,
+							@Value("${tagly.tags.batch.maximum-size:1000}") int maximumBatchSize) {
+		return new BatchTagger(tagGenerator, workerCount, maximumBatchSize);
+	}
+
+	@Bean
+	ShoutOutQueue shoutOutQueue(@Value("${tagly.shoutout.async.enabled:false}") boolean enabled,
+								@Value("${tagly.shoutout.async.queue-depth:1000}") int queueDepth,
+								@Value("${tagly.shoutout.async.workers:2}") int workerCount,
+								@Value("${tagly.shoutout.async.rejection-status:429}") int rejectionStatus) {
+		return new ShoutOutQueue(enabled, queueDepth, workerCount, rejectionStatus);
+	}
+
+	@Bean
+	HeavyHitters mentions(@Value("${tagly.mentions.capacity:200}") int capacity) {
+		return new HeavyHitters(capacity);
+	}
+
+	@Bean
+	QuoteCache quoteCache(@Value("${tagly.quotes.cache.ttl-ms:250}") long ttlMillis,
+						  @Value("${tagly.quotes.cache.ticker-ttl-ms:}") String tickerTtls,
+						  @Value("${tagly.quotes.cache.negative-ttl-ms:1000}") long negativeTtlMillis,
+						  @Value("${tagly.quotes.cache.maximum-size:10000}") int maximumSize) {
+		return new QuoteCache(ttlMillis, tickerTtls, negativeTtlMillis, maximumSize);
+	}
+
+	@Bean
+	IdempotencyStore idempotencyStore(@Value("${tagly.orders.idempotency.maximum-size:100000}") long maximumSize,
+									  @Value("${tagly.orders.idempotency.window-seconds:600}") long windowSeconds) {
+		return new IdempotencyStore(maximumSize, Duration.ofSeconds(windowSeconds));
+	}
+
+	@Bean
+	OrderBatcher orderBatcher(@Value("${tagly.orders.batch.enabled:false}") boolean enabled,
+							  @Value("${tagly.orders.batch.maximum-size:32}") int maximumSize,
+							  @Value("${tagly.orders.batch.linger-ms:5}") long lingerMillis) {
+		return new OrderBatcher(enabled, maximumSize, lingerMillis);
+	}
+
+	@Bean
+	Telemetry telemetry(Environment environment) {
+		return Telemetry.start(environment);
+	}
 }
@@ -1,14 +1,63 @@
 package com.sherrif.of.nottingham.app;
 
+import com.sherrif.of.nottingham.dto.TaglyBinaryHttpMessageConverter;
+import com.sherrif.of.nottingham.services.subscription.QuoteBook;
+import com.sherrif.of.nottingham.services.subscription.QuoteStreams;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Collections;
+import java.util.List;
 
 @SpringBootApplication
 @ComponentScan({"com.sherrif.of.nottingham.services.subscription"})
+@Import(DiagnosticsConfiguration.class)
 public class SubscriptionServiceApplication {
     public static void main(String[] args) {
         System.setProperty("otel.resource.attributes", "service.name=OtlpExporterExample");
-        SpringApplication.run(SubscriptionServiceApplication.class, args);
+        SpringApplication application = new SpringApplication(SubscriptionServiceApplication.class);
+        // every open quote stream holds a connection, so allow more than Tomcat's default 8192;
+        // a default, so application.properties or the command line can still override it
+        application.setDefaultProperties(Collections.singletonMap("server.tomcat.max-connections", "60000"));
+        application.run(args);
+    }
+
+    @Bean
+    WebMvcConfigurer taglyBinaryConverter() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                // after Jackson, so clients that accept anything still get JSON
+                converters.add(new TaglyBinaryHttpMessageConverter());
+            }
+        };
+    }
+
+    @Bean
+    QuoteBook quoteBook(@Value("${tagly.quotes.seed:GME:225}") String seed) {
+        return new QuoteBook(seed);
+    }
+
+    @Bean
+    QuoteStreams quoteStreams(QuoteBook quoteBook,
+                              @Value("${tagly.quotes.stream.senders:4}") int senders,
+                              @Value("${tagly.quotes.stream.timeout-ms:1800000}") long timeoutMillis,
+                              @Value("${tagly.quotes.stream.send-timeout-ms:2000}") long sendTimeoutMillis,
+                              @Value("${tagly.quotes.stream.maximum-subscribers:50000}") int maximumSubscribers,
+                              @Value("${tagly.quotes.stream.maximum-tickers:100}") int maximumTickers) {
+        return new QuoteStreams(quoteBook, senders, timeoutMillis, sendTimeoutMillis, maximumSubscribers,
+                maximumTickers);
+    }
+
+    @Bean
+    Telemetry telemetry(Environment environment) {
+        return Telemetry.start(environment);
     }
 }
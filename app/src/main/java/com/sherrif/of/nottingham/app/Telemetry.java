@@ -0,0 +1,319 @@
+package com.sherrif.of.nottingham.app;
+
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
+import com.sherrif.of.nottingham.telemetry.FileMetricExporter;
+import com.sherrif.of.nottingham.telemetry.FileSpanExporter;
+import com.sherrif.of.nottingham.telemetry.TelemetryFileWriter;
+import com.sherrif.of.nottingham.tracing.ErrorKeepingSpanProcessor;
+import com.sherrif.of.nottingham.tracing.SpanNameSampler;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.metrics.common.Labels;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.metrics.OtlpGrpcMetricExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.OpenTelemetrySdkAutoConfiguration;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.export.IntervalMetricReader;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.PropertyResolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The process's one OpenTelemetry pipeline: a tracer provider with a {@link SpanNameSampler} and a
+ * batch span processor, and a meter provider read on an interval, both exporting over a single
+ * OTLP gRPC channel or both to local files. {@link #start} builds it on the first call and returns
+ * the same instance after that, whatever properties later callers pass. Settings are read from
+ * {@code tagly.telemetry.*}:
+ * <ul>
+ *     <li>{@code exporter} - {@code otlp}, or {@code file} to measure the services and their
+ *     telemetry without a collector</li>
+ *     <li>{@code endpoint} - OTLP gRPC endpoint, {@code http://} for plaintext or {@code https://}</li>
+ *     <li>{@code compression} - {@code gzip} or {@code none}</li>
+ *     <li>{@code export-timeout-ms} - deadline of one span export</li>
+ *     <li>{@code spans.max-queue-size}, {@code spans.max-export-batch-size},
+ *     {@code spans.schedule-delay-ms} - the batch span processor</li>
+ *     <li>{@code metrics.export-interval-ms} - how often metrics are collected and pushed</li>
+ *     <li>{@code file.dir}, {@code file.file-bytes}, {@code file.max-queued-batches},
+ *     {@code file.flush-interval-ms} - the {@link TelemetryFileWriter} of the file exporter</li>
+ * </ul>
+ * and the sampling rates from {@code tagly.tracing.sampling.*}.
+ *
+ * <p>The meter provider is registered globally before the span processor is built, so the processor
+ * reports its own {@code queueSize} and {@code processedSpans} (with {@code dropped=true} for spans
+ * that found the queue full). Span exports are timed into {@code telemetry.export.latency} and
+ * counted in {@code telemetry.exported.spans} by outcome.
+ */
+public final class Telemetry {
+
+    private static final Logger logger = LoggerFactory.getLogger(Telemetry.class);
+
+    // guarded by Telemetry.class
+    private static Telemetry instance;
+
+    // null when exporting to files
+    private final ManagedChannel channel;
+    // null when exporting over OTLP
+    private final TelemetryFileWriter fileWriter;
+    private final SpanNameSampler traceSampler = new SpanNameSampler();
+    private final SdkMeterProvider meterProvider;
+    private final IntervalMetricReader metricReader;
+    private final SdkTracerProvider tracerProvider;
+    private final OpenTelemetrySdk openTelemetry;
+    private final LatencyHistogram exportLatency = new LatencyHistogram();
+    private final LongAdder exportedSpans = new LongAdder();
+    private final LongAdder failedSpans = new LongAdder();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+
+    /**
+     * Builds the pipeline from {@code properties} on the first call; later calls return it unchanged.
+     */
+    public static synchronized Telemetry start(PropertyResolver properties) {
+        if (instance == null) {
+            instance = new Telemetry(properties);
+        }
+        return instance;
+    }
+
+    private Telemetry(PropertyResolver properties) {
+        String exporter = properties.getProperty("tagly.telemetry.exporter", "otlp");
+        String endpoint = properties.getProperty("tagly.telemetry.endpoint", "http://otel-agent:4317");
+        String compression = properties.getProperty("tagly.telemetry.compression", "gzip");
+        long exportTimeoutMillis = properties.getProperty("tagly.telemetry.export-timeout-ms", Long.class, 10000L);
+        int maxQueueSize = properties.getProperty("tagly.telemetry.spans.max-queue-size", Integer.class, 2048);
+        int maxExportBatchSize = properties.getProperty("tagly.telemetry.spans.max-export-batch-size", Integer.class, 512);
+        long scheduleDelayMillis = properties.getProperty("tagly.telemetry.spans.schedule-delay-ms", Long.class, 1000L);
+        long exportIntervalMillis = properties.getProperty("tagly.telemetry.metrics.export-interval-ms", Long.class, 10000L);
+
+        String fileDirectory = properties.getProperty("tagly.telemetry.file.dir", "telemetry");
+        long fileBytes = properties.getProperty("tagly.telemetry.file.file-bytes", Long.class, 67108864L);
+        int fileQueueSize = properties.getProperty("tagly.telemetry.file.max-queued-batches", Integer.class, 1024);
+        long fileFlushMillis = properties.getProperty("tagly.telemetry.file.flush-interval-ms", Long.class, 1000L);
+
+        SpanExporter spanTarget;
+        MetricExporter metricExporter;
+        String destination;
+        switch (exporter) {
+            case "otlp":
+                this.channel = channel(endpoint, compression);
+                this.fileWriter = null;
+                spanTarget = OtlpGrpcSpanExporter.builder()
+                        .setChannel(channel)
+                        .setTimeout(exportTimeoutMillis, TimeUnit.MILLISECONDS)
+                        .build();
+                metricExporter = OtlpGrpcMetricExporter.builder().setChannel(channel).build();
+                destination = String.format("endpoint %s, compression %s", endpoint, compression);
+                break;
+            case "file":
+                this.channel = null;
+                try {
+                    this.fileWriter = new TelemetryFileWriter(Paths.get(fileDirectory), fileBytes, fileQueueSize,
+                            fileFlushMillis);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                spanTarget = new FileSpanExporter(fileWriter);
+                metricExporter = new FileMetricExporter(fileWriter);
+                destination = String.format("files in %s of %d bytes", fileDirectory, fileBytes);
+                break;
+            default:
+                throw new IllegalArgumentException("tagly.telemetry.exporter must be otlp or file, was " + exporter);
+        }
+        String settings = String.format("%s, export timeout %d ms, span queue %d, span batch %d, span delay %d ms, "
+                        + "metric interval %d ms", destination, exportTimeoutMillis, maxQueueSize, maxExportBatchSize,
+                scheduleDelayMillis, exportIntervalMillis);
+
+        // metrics first, so the span processor below finds the global meter provider for its own metrics
+        this.meterProvider = SdkMeterProvider.builder().buildAndRegisterGlobal();
+        this.metricReader = IntervalMetricReader.builder()
+                .setMetricExporter(metricExporter)
+                .setMetricProducers(Collections.singleton(meterProvider))
+                .setExportIntervalMillis(exportIntervalMillis)
+                .build();
+
+        traceSampler.configure(properties.getProperty("tagly.tracing.sampling.rates", ""),
+                properties.getProperty("tagly.tracing.sampling.keep-errors", Boolean.class, false));
+        traceSampler.watch(properties.getProperty("tagly.tracing.sampling.rates-file", ""),
+                properties.getProperty("tagly.tracing.sampling.reload-interval-seconds", Long.class, 30L));
+        SpanExporter spanExporter = new TimedSpanExporter(spanTarget);
+        this.tracerProvider = SdkTracerProvider.builder()
+                .setSampler(traceSampler)
+                .addSpanProcessor(new ErrorKeepingSpanProcessor(BatchSpanProcessor.builder(spanExporter)
+                        .setMaxQueueSize(maxQueueSize)
+                        .setMaxExportBatchSize(maxExportBatchSize)
+                        .setScheduleDelay(scheduleDelayMillis, TimeUnit.MILLISECONDS)
+                        .setExporterTimeout(exportTimeoutMillis, TimeUnit.MILLISECONDS)
+                        .build(), traceSampler))
+                .setResource(OpenTelemetrySdkAutoConfiguration.getResource())
+                .build();
+        this.openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .buildAndRegisterGlobal();
+
+        registerMetrics(meterProvider.get("com.sherrif.of.nottingham.telemetry"));
+        // Spring calls shutdown() on context close; the hook covers plain main() programs
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "telemetry-shutdown"));
+        logger.info("Telemetry started with {}", settings);
+    }
+
+    private static ManagedChannel channel(String endpoint, String compression) {
+        URI uri = URI.create(endpoint);
+        ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forAddress(uri.getHost(),
+                uri.getPort() != -1 ? uri.getPort() : 4317);
+        if ("https".equals(uri.getScheme())) {
+            builder.useTransportSecurity();
+        } else {
+            builder.usePlaintext();
+        }
+        switch (compression) {
+            case "gzip":
+                builder.intercept(new CompressingInterceptor(compression));
+                break;
+            case "none":
+                break;
+            default:
+                throw new IllegalArgumentException("tagly.telemetry.compression must be gzip or none, was " + compression);
+        }
+        return builder.build();
+    }
+
+    private void registerMetrics(Meter meter) {
+        // Time to export a batch of spans
+        meter.longValueObserverBuilder("telemetry.export.latency")
+                .setDescription("Span Export Latency in us")
+                .setUnit("us")
+                .setUpdater(result -> {
+                    LatencyHistogram.Snapshot snapshot = exportLatency.intervalSnapshot();
+                    if (snapshot.getCount() > 0) {
+                        result.observe(snapshot.valueAtQuantile(0.5), Labels.of("quantile", "p50"));
+                        result.observe(snapshot.valueAtQuantile(0.99), Labels.of("quantile", "p99"));
+                        result.observe(snapshot.getMax(), Labels.of("quantile", "max"));
+                    }
+                })
+                .build();
+        // Spans handed to the exporter, by whether the export succeeded
+        meter.longSumObserverBuilder("telemetry.exported.spans")
+                .setDescription("Spans Exported")
+                .setUnit("1")
+                .setUpdater(result -> {
+                    result.observe(exportedSpans.sum(), Labels.of("outcome", "success"));
+                    result.observe(failedSpans.sum(), Labels.of("outcome", "failure"));
+                })
+                .build();
+        if (fileWriter != null) {
+            // Telemetry records written to files, and dropped because the writer fell behind
+            meter.longSumObserverBuilder("telemetry.file.records")
+                    .setDescription("Telemetry File Records")
+                    .setUnit("1")
+                    .setUpdater(result -> {
+                        result.observe(fileWriter.writtenRecords(), Labels.of("outcome", "written"));
+                        result.observe(fileWriter.droppedRecords(), Labels.of("outcome", "dropped"));
+                    })
+                    .build();
+        }
+        traceSampler.registerMetrics(meter);
+    }
+
+    public OpenTelemetry getOpenTelemetry() {
+        return openTelemetry;
+    }
+
+    public MeterProvider getMeterProvider() {
+        return meterProvider;
+    }
+
+    public SpanNameSampler getTraceSampler() {
+        return traceSampler;
+    }
+
+    /**
+     * Flushes and stops both pipelines; only the first call does anything.
+     */
+    public void shutdown() {
+        if (!shutdown.compareAndSet(false, true)) {
+            return;
+        }
+        logger.info("Telemetry shutting down, exporting the remaining spans and metrics");
+        traceSampler.shutdown();
+        tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+        metricReader.shutdown();
+        if (channel != null) {
+            channel.shutdown();
+        }
+        if (fileWriter != null) {
+            fileWriter.shutdown();
+        }
+    }
+
+    /**
+     * Sends every call on the channel with the given compression.
+     */
+    private static final class CompressingInterceptor implements ClientInterceptor {
+        private final String compression;
+
+        CompressingInterceptor(String compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions callOptions, Channel next) {
+            return next.newCall(method, callOptions.withCompression(compression));
+        }
+    }
+
+    private final class TimedSpanExporter implements SpanExporter {
+        private final SpanExporter delegate;
+
+        TimedSpanExporter(SpanExporter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            long startTime = System.nanoTime();
+            CompletableResultCode result = delegate.export(spans);
+            result.whenComplete(() -> {
+                exportLatency.recordNanos(System.nanoTime() - startTime);
+                (result.isSuccess() ? exportedSpans : failedSpans).add(spans.size());
+            });
+            return result;
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return delegate.flush();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return delegate.shutdown();
+        }
+    }
+}
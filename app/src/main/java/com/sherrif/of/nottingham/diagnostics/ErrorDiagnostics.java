@@ -0,0 +1,223 @@
+package com.sherrif.of.nottingham.diagnostics;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.common.Labels;
+import io.opentelemetry.api.trace.Span;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records errors on spans without letting an error storm pay for a stack trace per request.
+ *
+ * <p>Each error is fingerprinted by its exception type, its root cause's type and its top stack
+ * frames; the message is left out, since it usually carries request data. Only the first
+ * {@code capturesPerFingerprint} occurrences of a fingerprint in each window are captured with the
+ * full stack trace, and at most {@code maximumCaptures} across all fingerprints. Every other
+ * occurrence gets a cheap {@code exception} event with the type, message, fingerprint and running
+ * occurrence count, so the trace still shows what failed and how often.
+ */
+public class ErrorDiagnostics {
+
+    private static final int FINGERPRINT_FRAMES = 8;
+    private static final int MAXIMUM_CAUSES = 16;
+    private static final AttributeKey<String> EXCEPTION_TYPE = AttributeKey.stringKey("exception.type");
+    private static final AttributeKey<String> EXCEPTION_MESSAGE = AttributeKey.stringKey("exception.message");
+    private static final AttributeKey<String> EXCEPTION_STACKTRACE = AttributeKey.stringKey("exception.stacktrace");
+    private static final AttributeKey<String> FINGERPRINT = AttributeKey.stringKey("diagnostics.fingerprint");
+    private static final AttributeKey<Long> OCCURRENCES = AttributeKey.longKey("diagnostics.occurrences");
+
+    private final int capturesPerFingerprint;
+    private final long windowNanos;
+    private final Cache<Long, Fingerprint> fingerprints;
+    private final Window global = new Window();
+    private final int maximumCaptures;
+
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder counted = new LongAdder();
+
+    public ErrorDiagnostics(int capturesPerFingerprint, int maximumCaptures, Duration window, long maximumFingerprints) {
+        this.capturesPerFingerprint = capturesPerFingerprint;
+        this.maximumCaptures = maximumCaptures;
+        this.windowNanos = window.toNanos();
+        this.fingerprints = CacheBuilder.newBuilder()
+                .maximumSize(maximumFingerprints)
+                .build();
+    }
+
+    /**
+     * Records {@code e} on the span, with its stack trace if the budget allows.
+     *
+     * @return true if the stack trace was captured, so callers can log it in full only then
+     */
+    public boolean record(Span span, Throwable e) {
+        long fingerprint = fingerprint(e);
+        Fingerprint occurrences = occurrences(fingerprint);
+        long count = occurrences.count.incrementAndGet();
+        Attributes attributes = Attributes.of(FINGERPRINT, Long.toHexString(fingerprint), OCCURRENCES, count);
+        if (tryCapture(occurrences)) {
+            span.recordException(e, attributes);
+            return true;
+        }
+        span.addEvent("exception", attributes.toBuilder()
+                .put(EXCEPTION_TYPE, e.getClass().getName())
+                .put(EXCEPTION_MESSAGE, String.valueOf(e.getMessage()))
+                .build());
+        return false;
+    }
+
+    /**
+     * Records an error that has no exception, fingerprinted by {@code reason}. A captured occurrence
+     * carries the stack of the calling thread.
+     *
+     * @return true if the stack trace was captured
+     */
+    public boolean record(Span span, String reason) {
+        long fingerprint = reason.hashCode();
+        Fingerprint occurrences = occurrences(fingerprint);
+        long count = occurrences.count.incrementAndGet();
+        Attributes attributes = Attributes.of(EXCEPTION_MESSAGE, reason, FINGERPRINT, Long.toHexString(fingerprint),
+                OCCURRENCES, count);
+        if (tryCapture(occurrences)) {
+            StringBuilder stack = new StringBuilder();
+            for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+                stack.append("\tat ").append(frame).append('\n');
+            }
+            span.addEvent("exception", attributes.toBuilder().put(EXCEPTION_STACKTRACE, stack.toString()).build());
+            return true;
+        }
+        span.addEvent("exception", attributes);
+        return false;
+    }
+
+    private Fingerprint occurrences(long fingerprint) {
+        Fingerprint occurrences = fingerprints.getIfPresent(fingerprint);
+        if (occurrences != null) {
+            return occurrences;
+        }
+        try {
+            return fingerprints.get(fingerprint, Fingerprint::new);
+        } catch (ExecutionException e) {
+            // the loader cannot fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean tryCapture(Fingerprint occurrences) {
+        long window = System.nanoTime() / windowNanos;
+        if (occurrences.window.tryAcquire(window, capturesPerFingerprint)) {
+            if (global.tryAcquire(window, maximumCaptures)) {
+                captured.increment();
+                return true;
+            }
+            // nothing was captured, so the fingerprint keeps its slot
+            occurrences.window.release(window);
+        }
+        counted.increment();
+        return false;
+    }
+
+    static long fingerprint(Throwable e) {
+        long hash = e.getClass().getName().hashCode();
+        Throwable root = e;
+        for (int i = 0; i < MAXIMUM_CAUSES && root.getCause() != null && root.getCause() != root; i++) {
+            root = root.getCause();
+        }
+        if (root != e) {
+            hash = 31 * hash + root.getClass().getName().hashCode();
+        }
+        StackTraceElement[] frames = e.getStackTrace();
+        for (int i = 0; i < Math.min(FINGERPRINT_FRAMES, frames.length); i++) {
+            hash = 31 * hash + frames[i].getClassName().hashCode();
+            hash = 31 * hash + frames[i].getMethodName().hashCode();
+            hash = 31 * hash + frames[i].getLineNumber();
+        }
+        return hash;
+    }
+
+    /**
+     * @return errors recorded with a full stack trace
+     */
+    public long captured() {
+        return captured.sum();
+    }
+
+    /**
+     * @return errors only counted, because their fingerprint or the global budget was used up
+     */
+    public long counted() {
+        return counted.sum();
+    }
+
+    public long fingerprints() {
+        return fingerprints.size();
+    }
+
+    /**
+     * Exports {@code diagnostics.errors}, the running count of recorded errors labelled
+     * {@code outcome} captured or counted, and {@code diagnostics.fingerprints}.
+     */
+    public void registerMetrics(Meter meter) {
+        meter.longSumObserverBuilder("diagnostics.errors")
+                .setDescription("Errors Recorded")
+                .setUnit("1")
+                .setUpdater(result -> {
+                    result.observe(captured(), Labels.of("outcome", "captured"));
+                    result.observe(counted(), Labels.of("outcome", "counted"));
+                })
+                .build();
+        meter.longValueObserverBuilder("diagnostics.fingerprints")
+                .setDescription("Distinct Error Fingerprints")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(fingerprints(), Labels.empty()))
+                .build();
+    }
+
+    private static final class Fingerprint {
+        final AtomicLong count = new AtomicLong();
+        final Window window = new Window();
+    }
+
+    /**
+     * Captures handed out in the current window; the count restarts when the window moves on. Only
+     * the first caller in a new window, and a release, take the lock.
+     */
+    private static final class Window {
+        private volatile long index = Long.MIN_VALUE;
+        private final AtomicInteger used = new AtomicInteger();
+
+        boolean tryAcquire(long window, int limit) {
+            if (window != index) {
+                synchronized (this) {
+                    if (window != index) {
+                        used.set(0);
+                        index = window;
+                    }
+                }
+            }
+            int current;
+            do {
+                current = used.get();
+                if (current >= limit) {
+                    return false;
+                }
+            } while (!used.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release(long window) {
+            synchronized (this) {
+                if (window == index) {
+                    used.decrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,30 @@
 package com.sherrif.of.nottingham.dto;
 
+import java.util.List;
+
 public class EquityOrder {
 
-    private String ticker;
+    public static final String BUY = "BUY";
+    public static final String SELL = "SELL";
+
+    // looked up as they are set and interned once the order is accepted, see SymbolTable
+    private Symbol ticker;
     private double price;
     private int units;
     private long timestamp;
-    private int orderId;
-    private String region;
+    private long orderId;
+    private Symbol region;
     private boolean errorFlag;
+    // BUY or SELL, buy when absent
+    private String side;
+    // optional; retries with the same key are placed once
+    private String idempotencyKey;
+    // set by the order processor
+    private int filledUnits;
+    private int remainingUnits;
+    private List<Fill> fills;
+    // set by the order processor when the order of a batch was not placed, null otherwise
+    private String rejection;
 
     public double getPrice() {
         return price;
@@ -36,27 +52,44 @@ public class EquityOrder {
 
 
     public String getTicker() {
-        return ticker;
+        return ticker == null ? null : ticker.getName();
     }
 
     public void setTicker(String ticker) {
-        this.ticker = ticker;
+        this.ticker = SymbolTable.TICKERS.lookup(ticker);
+    }
+
+    public Symbol tickerSymbol() {
+        return ticker;
     }
 
     public String getRegion() {
-        return region;
+        return region == null ? null : region.getName();
     }
 
     public void setRegion(String region) {
-        this.region = region;
+        this.region = SymbolTable.REGIONS.lookup(region);
     }
 
+    public Symbol regionSymbol() {
+        return region;
+    }
 
-    public int getOrderId() {
+    /**
+     * Interns the ticker and region. Only for an order whose ticker the subscription service quotes,
+     * which the order service checks before placing it, so made-up tickers never take up the table.
+     */
+    public void internSymbols() {
+        ticker = SymbolTable.TICKERS.intern(getTicker());
+        region = SymbolTable.REGIONS.intern(getRegion());
+    }
+
+
+    public long getOrderId() {
         return orderId;
     }
 
-    public void setOrderId(int orderId) {
+    public void setOrderId(long orderId) {
         this.orderId = orderId;
     }
 
@@ -69,4 +102,59 @@ public class EquityOrder {
         this.errorFlag = errorFlag;
     }
 
+    public String getSide() {
+        return side;
+    }
+
+    public void setSide(String side) {
+        this.side = side;
+    }
+
+    /**
+     * @return whether {@code side} is BUY or SELL in any case, or absent, which means buy
+     */
+    public static boolean isValidSide(String side) {
+        return side == null || BUY.equalsIgnoreCase(side) || SELL.equalsIgnoreCase(side);
+    }
+
+    public int getFilledUnits() {
+        return filledUnits;
+    }
+
+    public void setFilledUnits(int filledUnits) {
+        this.filledUnits = filledUnits;
+    }
+
+    public int getRemainingUnits() {
+        return remainingUnits;
+    }
+
+    public void setRemainingUnits(int remainingUnits) {
+        this.remainingUnits = remainingUnits;
+    }
+
+    public List<Fill> getFills() {
+        return fills;
+    }
+
+    public void setFills(List<Fill> fills) {
+        this.fills = fills;
+    }
+
+    public String getRejection() {
+        return rejection;
+    }
+
+    public void setRejection(String rejection) {
+        this.rejection = rejection;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
 }
@@ -0,0 +1,174 @@
+package com.sherrif.of.nottingham.dto;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of an {@link EquityOrder}, big-endian:
+ * <pre>
+ *   long orderId, long timestamp, double price, int units,
+ *   byte flags (1 = error, 2 = sell, 4 = rejected, 8 = buy; neither buy nor sell for an absent side),
+ *   string ticker, string region, int filledUnits, int remainingUnits,
+ *   int fill count, then per fill: long restingOrderId, double price, int units,
+ *   then string rejection only if flagged rejected
+ * </pre>
+ * Strings are a {@code short} UTF-8 length followed by the bytes, with a length of -1 for null. A side
+ * other than BUY or SELL cannot be encoded, so it is rejected rather than sent as either.
+ */
+public final class EquityOrderCodec {
+
+    private static final byte ERROR = 1;
+    private static final byte SELL = 2;
+    private static final byte REJECTED = 4;
+    private static final byte BUY = 8;
+    private static final int FIXED_SIZE = 8 + 8 + 8 + 4 + 1 + 4 + 4 + 4;
+    private static final int FILL_SIZE = 8 + 8 + 4;
+
+    private EquityOrderCodec() {
+    }
+
+    public static int encodedSize(EquityOrder order) {
+        int fills = order.getFills() == null ? 0 : order.getFills().size();
+        int rejection = order.getRejection() == null ? 0 : stringSize(order.getRejection());
+        return FIXED_SIZE + stringSize(order.getTicker()) + stringSize(order.getRegion()) + fills * FILL_SIZE + rejection;
+    }
+
+    /**
+     * Writes the order at the buffer's position, which must have {@link #encodedSize} bytes remaining.
+     *
+     * @throws IllegalArgumentException if the side is neither BUY nor SELL, or a string is too long
+     */
+    public static void encode(EquityOrder order, ByteBuffer buffer) {
+        buffer.putLong(order.getOrderId());
+        buffer.putLong(order.getTimestamp());
+        buffer.putDouble(order.getPrice());
+        buffer.putInt(order.getUnits());
+        byte flags = 0;
+        if (order.isErrorFlag()) {
+            flags |= ERROR;
+        }
+        if (EquityOrder.SELL.equalsIgnoreCase(order.getSide())) {
+            flags |= SELL;
+        } else if (EquityOrder.BUY.equalsIgnoreCase(order.getSide())) {
+            flags |= BUY;
+        } else if (order.getSide() != null) {
+            throw new IllegalArgumentException("Invalid side " + order.getSide());
+        }
+        if (order.getRejection() != null) {
+            flags |= REJECTED;
+        }
+        buffer.put(flags);
+        putString(order.getTicker(), buffer);
+        putString(order.getRegion(), buffer);
+        buffer.putInt(order.getFilledUnits());
+        buffer.putInt(order.getRemainingUnits());
+        List<Fill> fills = order.getFills();
+        buffer.putInt(fills == null ? 0 : fills.size());
+        if (fills != null) {
+            for (Fill fill : fills) {
+                buffer.putLong(fill.getRestingOrderId());
+                buffer.putDouble(fill.getPrice());
+                buffer.putInt(fill.getUnits());
+            }
+        }
+        if (order.getRejection() != null) {
+            putString(order.getRejection(), buffer);
+        }
+    }
+
+    /**
+     * Reads one order from the buffer's position.
+     *
+     * @throws IllegalArgumentException if the bytes are not a complete order
+     */
+    public static EquityOrder decode(ByteBuffer buffer) {
+        try {
+            EquityOrder order = new EquityOrder();
+            order.setOrderId(buffer.getLong());
+            order.setTimestamp(buffer.getLong());
+            order.setPrice(buffer.getDouble());
+            order.setUnits(buffer.getInt());
+            byte flags = buffer.get();
+            order.setErrorFlag((flags & ERROR) != 0);
+            if ((flags & SELL) != 0 && (flags & BUY) != 0) {
+                throw new IllegalArgumentException("Order flagged both buy and sell");
+            }
+            order.setSide((flags & SELL) != 0 ? EquityOrder.SELL : (flags & BUY) != 0 ? EquityOrder.BUY : null);
+            order.setTicker(getString(buffer));
+            order.setRegion(getString(buffer));
+            order.setFilledUnits(buffer.getInt());
+            order.setRemainingUnits(buffer.getInt());
+            int fillCount = buffer.getInt();
+            if (fillCount < 0 || fillCount > buffer.remaining() / FILL_SIZE) {
+                throw new IllegalArgumentException("Invalid fill count " + fillCount);
+            }
+            if (fillCount > 0) {
+                List<Fill> fills = new ArrayList<>(fillCount);
+                for (int i = 0; i < fillCount; i++) {
+                    fills.add(new Fill(buffer.getLong(), buffer.getDouble(), buffer.getInt()));
+                }
+                order.setFills(fills);
+            }
+            if ((flags & REJECTED) != 0) {
+                order.setRejection(getString(buffer));
+            }
+            return order;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated order", e);
+        }
+    }
+
+    static int stringSize(String value) {
+        return 2 + (value == null ? 0 : utf8Length(value));
+    }
+
+    static void putString(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long to encode");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Truncated string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is encoded as '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
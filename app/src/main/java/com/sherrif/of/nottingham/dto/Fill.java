@@ -0,0 +1,41 @@
+package com.sherrif.of.nottingham.dto;
+
+public class Fill {
+    private long restingOrderId;
+    private double price;
+    private int units;
+
+    public Fill() {
+    }
+
+    public Fill(long restingOrderId, double price, int units) {
+        this.restingOrderId = restingOrderId;
+        this.price = price;
+        this.units = units;
+    }
+
+    public long getRestingOrderId() {
+        return restingOrderId;
+    }
+
+    public void setRestingOrderId(long restingOrderId) {
+        this.restingOrderId = restingOrderId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    public int getUnits() {
+        return units;
+    }
+
+    public void setUnits(int units) {
+        this.units = units;
+    }
+
+}
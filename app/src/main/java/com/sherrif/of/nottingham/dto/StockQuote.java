@@ -1,32 +1,41 @@
 package com.sherrif.of.nottingham.dto;
 
-public class StockQuote {
-    private String ticker;
-    private double price;
-    private long timestampInMillis;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable quote snapshot. Jackson and the binary codec build it through the constructor, so a
+ * quote shared between readers, streams and caches can never change under them.
+ */
+public final class StockQuote {
+    // interned only if the ticker already is, see SymbolTable
+    private final Symbol ticker;
+    private final double price;
+    private final long timestampInMillis;
+
+    @JsonCreator
+    public StockQuote(@JsonProperty("ticker") String ticker,
+                      @JsonProperty("price") double price,
+                      @JsonProperty("timestampInMillis") long timestampInMillis) {
+        this.ticker = SymbolTable.TICKERS.lookup(ticker);
+        this.price = price;
+        this.timestampInMillis = timestampInMillis;
+    }
 
     public String getTicker() {
-        return ticker;
+        return ticker == null ? null : ticker.getName();
     }
 
-    public void setTicker(String ticker) {
-        this.ticker = ticker;
+    public Symbol tickerSymbol() {
+        return ticker;
     }
 
     public double getPrice() {
         return price;
     }
 
-    public void setPrice(double price) {
-        this.price = price;
-    }
-
     public long getTimestampInMillis() {
         return timestampInMillis;
     }
 
-    public void setTimestampInMillis(long timestampInMillis) {
-        this.timestampInMillis = timestampInMillis;
-    }
-
 }
@@ -0,0 +1,46 @@
+package com.sherrif.of.nottingham.dto;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary form of a {@link StockQuote}, big-endian:
+ * <pre>
+ *   string ticker, double price, long timestampInMillis
+ * </pre>
+ * Strings are encoded as in {@link EquityOrderCodec}.
+ */
+public final class StockQuoteCodec {
+
+    private static final int FIXED_SIZE = 8 + 8;
+
+    private StockQuoteCodec() {
+    }
+
+    public static int encodedSize(StockQuote quote) {
+        return FIXED_SIZE + EquityOrderCodec.stringSize(quote.getTicker());
+    }
+
+    /**
+     * Writes the quote at the buffer's position, which must have {@link #encodedSize} bytes remaining.
+     */
+    public static void encode(StockQuote quote, ByteBuffer buffer) {
+        EquityOrderCodec.putString(quote.getTicker(), buffer);
+        buffer.putDouble(quote.getPrice());
+        buffer.putLong(quote.getTimestampInMillis());
+    }
+
+    /**
+     * Reads one quote from the buffer's position.
+     *
+     * @throws IllegalArgumentException if the bytes are not a complete quote
+     */
+    public static StockQuote decode(ByteBuffer buffer) {
+        try {
+            String ticker = EquityOrderCodec.getString(buffer);
+            return new StockQuote(ticker, buffer.getDouble(), buffer.getLong());
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated quote", e);
+        }
+    }
+}
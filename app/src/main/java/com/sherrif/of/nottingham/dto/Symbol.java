@@ -0,0 +1,74 @@
+package com.sherrif.of.nottingham.dto;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.common.Labels;
+
+/**
+ * One canonical ticker or region, with the span attributes and metric labels for it built once.
+ * Interned symbols have a dense ID below their table's capacity, so per-symbol state can live in an
+ * array. An {@link #UNINTERNED} symbol is only a name and its table, and builds its attributes and
+ * labels the first time a span or metric asks for them, so looking up an unknown name costs no
+ * more than the string it wraps.
+ */
+public final class Symbol {
+
+    public static final int UNINTERNED = -1;
+
+    private final int id;
+    private final String name;
+    private final SymbolTable table;
+    // both immutable, so a racing first use at worst builds them twice
+    private Attributes attributes;
+    private Labels labels;
+
+    Symbol(int id, String name, SymbolTable table) {
+        this.id = id;
+        this.name = name;
+        this.table = table;
+        if (id != UNINTERNED) {
+            this.attributes = table.attributes(name);
+            this.labels = table.labels(name);
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isInterned() {
+        return id != UNINTERNED;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the span attribute for this symbol, {@code tags.stock} or {@code tags.region}
+     */
+    public Attributes getAttributes() {
+        Attributes attributes = this.attributes;
+        if (attributes == null) {
+            attributes = table.attributes(name);
+            this.attributes = attributes;
+        }
+        return attributes;
+    }
+
+    /**
+     * @return the metric label for this symbol, {@code stock} or {@code region}
+     */
+    public Labels getLabels() {
+        Labels labels = this.labels;
+        if (labels == null) {
+            labels = table.labels(name);
+            this.labels = labels;
+        }
+        return labels;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sherrif.of.nottingham.dto;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.common.Labels;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns the small, hot set of tickers and regions. {@link EquityOrder} and {@link StockQuote}
+ * {@link #lookup} every ticker and region as they are deserialized, so a request for a known name
+ * carries the one canonical {@link Symbol} instead of a fresh string, and spans, labels and
+ * per-ticker state are looked up by its ID.
+ *
+ * <p>Only tickers known to be valid are {@link #intern interned}: those the quote book holds or the
+ * subscription service quoted. The order service rejects an order for any other ticker before it
+ * reaches the matching engine, so the tickers of placed orders are quoted ones. Anything else, such
+ * as a request parameter, is only looked up, so a made-up ticker never takes one of the IDs. Regions
+ * are not checked against a list and are interned from every placed order, so junk regions can use
+ * up the region table, after which new regions share the overflow series.
+ *
+ * <p>IDs are handed out densely from zero and never reused. At most {@code capacity} names are
+ * interned; later names get an uninterned symbol.
+ */
+public class SymbolTable {
+
+    public static final SymbolTable TICKERS = new SymbolTable("tags.stock", "stock", 4096);
+    public static final SymbolTable REGIONS = new SymbolTable("tags.region", "region", 256);
+
+    private final AttributeKey<String> attributeKey;
+    private final String labelKey;
+    private final int capacity;
+    private final ConcurrentMap<String, Symbol> symbols = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public SymbolTable(String attributeKey, String labelKey, int capacity) {
+        this.attributeKey = AttributeKey.stringKey(attributeKey);
+        this.labelKey = labelKey;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the canonical symbol for {@code name}, or null for a null name
+     */
+    public Symbol intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        Symbol symbol = symbols.get(name);
+        if (symbol != null) {
+            return symbol;
+        }
+        if (size.get() < capacity) {
+            symbol = symbols.computeIfAbsent(name, ignored -> {
+                int id = size.getAndIncrement();
+                if (id >= capacity) {
+                    // lost a race for the last ID, no mapping is created
+                    size.decrementAndGet();
+                    return null;
+                }
+                return create(id, name);
+            });
+        }
+        return symbol != null ? symbol : create(Symbol.UNINTERNED, name);
+    }
+
+    /**
+     * @return the interned symbol for {@code name}, or null if it has not been interned
+     */
+    public Symbol find(String name) {
+        return name == null ? null : symbols.get(name);
+    }
+
+    /**
+     * @return the interned symbol for {@code name} if there is one, otherwise a bare uninterned symbol
+     * that leaves the table as it is; null for a null name
+     */
+    public Symbol lookup(String name) {
+        if (name == null) {
+            return null;
+        }
+        Symbol symbol = symbols.get(name);
+        return symbol != null ? symbol : create(Symbol.UNINTERNED, name);
+    }
+
+    private Symbol create(int id, String name) {
+        return new Symbol(id, name, this);
+    }
+
+    Attributes attributes(String name) {
+        return Attributes.of(attributeKey, name);
+    }
+
+    Labels labels(String name) {
+        return Labels.of(labelKey, name);
+    }
+
+    /**
+     * @return the exclusive upper bound of interned IDs
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return Math.min(size.get(), capacity);
+    }
+}
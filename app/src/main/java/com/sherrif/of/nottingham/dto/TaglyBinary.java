@@ -0,0 +1,105 @@
+package com.sherrif.of.nottingham.dto;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary content type spoken between the tagly services. A body is a single {@link EquityOrder},
+ * a single {@link StockQuote}, or a list of orders written as an {@code int} count followed by the
+ * orders. JSON stays the default; a caller opts in through {@code Content-Type} and {@code Accept}.
+ */
+public final class TaglyBinary {
+
+    public static final String MEDIA_TYPE = "application/x-tagly-binary";
+
+    private TaglyBinary() {
+    }
+
+    /**
+     * @return true for the types a binary body can be read as
+     */
+    public static boolean supports(Type type) {
+        if (type == EquityOrder.class || type == StockQuote.class) {
+            return true;
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            return parameterized.getRawType() == List.class
+                    && parameterized.getActualTypeArguments()[0] == EquityOrder.class;
+        }
+        return false;
+    }
+
+    /**
+     * @return true for the types a binary body can be written from; a list only when its declared
+     * element type is {@link EquityOrder}, as a raw list may hold anything
+     */
+    public static boolean canEncode(Type type) {
+        return supports(type);
+    }
+
+    public static byte[] encode(Object value) {
+        if (value instanceof EquityOrder) {
+            EquityOrder order = (EquityOrder) value;
+            ByteBuffer buffer = ByteBuffer.allocate(EquityOrderCodec.encodedSize(order));
+            EquityOrderCodec.encode(order, buffer);
+            return buffer.array();
+        }
+        if (value instanceof StockQuote) {
+            StockQuote quote = (StockQuote) value;
+            ByteBuffer buffer = ByteBuffer.allocate(StockQuoteCodec.encodedSize(quote));
+            StockQuoteCodec.encode(quote, buffer);
+            return buffer.array();
+        }
+        if (value instanceof List) {
+            List<?> orders = (List<?>) value;
+            int size = 4;
+            for (Object order : orders) {
+                if (!(order instanceof EquityOrder)) {
+                    throw new IllegalArgumentException("Only lists of orders have a binary form, found " + order);
+                }
+                size += EquityOrderCodec.encodedSize((EquityOrder) order);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(orders.size());
+            for (Object order : orders) {
+                EquityOrderCodec.encode((EquityOrder) order, buffer);
+            }
+            return buffer.array();
+        }
+        throw new IllegalArgumentException("No binary form for " + (value == null ? null : value.getClass()));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a complete value of the type
+     */
+    public static Object decode(ByteBuffer buffer, Type type) {
+        if (type == EquityOrder.class) {
+            return EquityOrderCodec.decode(buffer);
+        }
+        if (type == StockQuote.class) {
+            return StockQuoteCodec.decode(buffer);
+        }
+        if (supports(type)) {
+            int count;
+            try {
+                count = buffer.getInt();
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated order list", e);
+            }
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid order count " + count);
+            }
+            List<EquityOrder> orders = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                orders.add(EquityOrderCodec.decode(buffer));
+            }
+            return orders;
+        }
+        throw new IllegalArgumentException("No binary form for " + type);
+    }
+}
@@ -0,0 +1,37 @@
+package com.sherrif.of.nottingham.dto;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+
+/**
+ * Reads {@link TaglyBinary} bodies for {@code WebClient}. The body is joined into one buffer and
+ * decoded in place.
+ */
+public class TaglyBinaryDecoder extends AbstractDataBufferDecoder<Object> {
+
+    public TaglyBinaryDecoder() {
+        super(MimeType.valueOf(TaglyBinary.MEDIA_TYPE));
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return TaglyBinary.supports(elementType.getType()) && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    public Object decode(DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints) {
+        try {
+            return TaglyBinary.decode(buffer.asByteBuffer(), targetType.getType());
+        } catch (IllegalArgumentException e) {
+            throw new DecodingException("Invalid " + TaglyBinary.MEDIA_TYPE + " body: " + e.getMessage(), e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
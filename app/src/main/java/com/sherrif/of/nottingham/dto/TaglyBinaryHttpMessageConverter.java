@@ -0,0 +1,72 @@
+package com.sherrif.of.nottingham.dto;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes {@link TaglyBinary} bodies for Spring MVC and {@code RestTemplate}. Register it
+ * after the Jackson converter so JSON stays the default for clients that accept anything.
+ */
+public class TaglyBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public TaglyBinaryHttpMessageConverter() {
+        super(MediaType.parseMediaType(TaglyBinary.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TaglyBinary.canEncode(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return TaglyBinary.supports(clazz) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return TaglyBinary.supports(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return TaglyBinary.canEncode(type != null ? type : clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        byte[] body = StreamUtils.copyToByteArray(inputMessage.getBody());
+        try {
+            return TaglyBinary.decode(ByteBuffer.wrap(body), type);
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Invalid " + TaglyBinary.MEDIA_TYPE + " body: " + e.getMessage(),
+                    e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        byte[] body;
+        try {
+            body = TaglyBinary.encode(value);
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotWritableException(e.getMessage(), e);
+        }
+        outputMessage.getHeaders().setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+}
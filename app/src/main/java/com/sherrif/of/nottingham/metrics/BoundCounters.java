@@ -0,0 +1,97 @@
+package com.sherrif.of.nottingham.metrics;
+
+import com.sherrif.of.nottingham.dto.Symbol;
+import com.sherrif.of.nottingham.dto.SymbolTable;
+import io.opentelemetry.api.metrics.BoundLongCounter;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.common.Labels;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches one {@link BoundLongCounter} per (stock, region) for a counter, so the request path binds
+ * each label set once instead of allocating {@link Labels} and a bound instrument per call. Bound
+ * counters are kept in arrays indexed by the {@link SymbolTable} IDs of the stock and region, so a
+ * hit is two array reads.
+ *
+ * <p>At most {@code maxSeries} label sets are bound. Once the cap is reached, or for a stock or
+ * region the symbol tables had no room for, values are recorded against a single
+ * {@code stock=other, region=other} series. The {@code String} overloads only look names up and
+ * never intern them, so a name that nothing has interned yet is counted there too.
+ */
+public class BoundCounters {
+
+    public static final String OVERFLOW = "other";
+
+    private final LongCounter counter;
+    private final int maxSeries;
+    private final AtomicInteger series = new AtomicInteger();
+    // stock ID -> region ID + 1 -> bound counter; slot 0 is the stock without a region
+    private final AtomicReferenceArray<AtomicReferenceArray<BoundLongCounter>> bound =
+            new AtomicReferenceArray<>(SymbolTable.TICKERS.capacity());
+    private final BoundLongCounter overflow;
+
+    public BoundCounters(LongCounter counter, int maxSeries) {
+        this.counter = counter;
+        this.maxSeries = maxSeries;
+        this.overflow = counter.bind(Labels.of("stock", OVERFLOW, "region", OVERFLOW));
+    }
+
+    public void add(long value, String stock) {
+        add(value, SymbolTable.TICKERS.find(stock), null);
+    }
+
+    public void add(long value, String stock, String region) {
+        Symbol regionSymbol = SymbolTable.REGIONS.find(region);
+        if (region != null && regionSymbol == null) {
+            overflow.add(value);
+            return;
+        }
+        add(value, SymbolTable.TICKERS.find(stock), regionSymbol);
+    }
+
+    public void add(long value, Symbol stock, Symbol region) {
+        get(stock, region).add(value);
+    }
+
+    private BoundLongCounter get(Symbol stock, Symbol region) {
+        if (stock == null || !stock.isInterned() || (region != null && !region.isInterned())) {
+            return overflow;
+        }
+        int slot = region == null ? 0 : region.getId() + 1;
+        AtomicReferenceArray<BoundLongCounter> byRegion = bound.get(stock.getId());
+        if (byRegion != null) {
+            BoundLongCounter recorder = byRegion.get(slot);
+            if (recorder != null) {
+                return recorder;
+            }
+        }
+        if (series.get() >= maxSeries) {
+            return overflow;
+        }
+        if (byRegion == null) {
+            bound.compareAndSet(stock.getId(), null, new AtomicReferenceArray<>(SymbolTable.REGIONS.capacity() + 1));
+            byRegion = bound.get(stock.getId());
+        }
+        if (series.incrementAndGet() > maxSeries) {
+            // lost a race for the last slot
+            series.decrementAndGet();
+            return overflow;
+        }
+        BoundLongCounter recorder = counter.bind(region == null
+                ? stock.getLabels()
+                : Labels.of("stock", stock.getName(), "region", region.getName()));
+        if (!byRegion.compareAndSet(slot, null, recorder)) {
+            // another thread bound the same label set first
+            recorder.unbind();
+            series.decrementAndGet();
+            return byRegion.get(slot);
+        }
+        return recorder;
+    }
+
+    public int size() {
+        return series.get();
+    }
+}
@@ -0,0 +1,122 @@
+package com.sherrif.of.nottingham.metrics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving sketch of the most frequent keys in an unbounded stream. It tracks at most
+ * {@code capacity} keys: when a new key arrives and the sketch is full, the key with the smallest
+ * count is replaced and the newcomer inherits that count as its possible overestimate. Any key
+ * whose true count exceeds {@code total / capacity} is guaranteed to be tracked.
+ *
+ * <p>The counters live in an indexed min-heap, so every update is O(log capacity) and memory is fixed.
+ */
+public class HeavyHitters {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final Counter[] heap;
+    private int size;
+    private long total;
+
+    public HeavyHitters(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    public synchronized void add(String key, long count) {
+        if (count <= 0) {
+            return;
+        }
+        total += count;
+        Counter counter = counters.get(key);
+        if (counter == null && size < capacity) {
+            counter = new Counter(key, size);
+            counter.count = count;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.index);
+            return;
+        }
+        if (counter == null) {
+            // evict the current minimum and let the new key take over its count
+            counter = heap[0];
+            counters.remove(counter.key);
+            counter.key = key;
+            counters.put(key, counter);
+        }
+        counter.count += count;
+        siftDown(counter.index);
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    /**
+     * @return up to {@code k} keys with their estimated counts, largest first
+     */
+    public synchronized Map<String, Long> top(int k) {
+        Counter[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(k, sorted.length); i++) {
+            top.put(sorted[i].key, sorted[i].count);
+        }
+        return top;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].index = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final class Counter {
+        String key;
+        long count;
+        int index;
+
+        Counter(String key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.sherrif.of.nottingham.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear (HDR style) histogram of latencies in microseconds with about 3% value precision.
+ *
+ * <p>Every recording thread owns its bucket array and is its only writer, so {@link #recordNanos}
+ * never contends or locks. Counts only ever grow; {@link #intervalSnapshot} sums all threads and
+ * subtracts the previous sum to get the distribution of the interval since the last snapshot.
+ * The arrays of threads that have terminated are folded into one shared array at the next
+ * snapshot and dropped, so pools that replace their threads do not grow the histogram.
+ */
+public class LatencyHistogram {
+
+    // values below 2^(SUB_BUCKET_BITS + 1) get exact buckets, above that each power of two is split in 2^SUB_BUCKET_BITS
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    // about 19 hours; anything slower is clamped into the last bucket
+    static final long MAX_VALUE_MICROS = (1L << 36) - 1;
+    static final int BUCKETS = indexOf(MAX_VALUE_MICROS) + 1;
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<AtomicLongArray> counts = ThreadLocal.withInitial(() -> {
+        Recorder recorder = new Recorder(Thread.currentThread());
+        recorders.add(recorder);
+        return recorder.counts;
+    });
+    // guarded by this
+    private final long[] previous = new long[BUCKETS];
+    // counts of the threads that have terminated; guarded by this
+    private final long[] retired = new long[BUCKETS];
+
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        int index = indexOf(Math.max(0, Math.min(micros, MAX_VALUE_MICROS)));
+        AtomicLongArray array = counts.get();
+        // single writer per array: an ordered store is enough, no CAS needed
+        array.lazySet(index, array.get(index) + 1);
+    }
+
+    /**
+     * @return the latencies recorded since the previous call
+     */
+    public synchronized Snapshot intervalSnapshot() {
+        long[] interval = new long[BUCKETS];
+        long total = 0;
+        for (Recorder recorder : recorders) {
+            // checked before reading, so a terminated thread's last counts are visible
+            boolean terminated = recorder.isTerminated();
+            long[] target = terminated ? retired : interval;
+            for (int i = 0; i < BUCKETS; i++) {
+                target[i] += recorder.counts.get(i);
+            }
+            if (terminated) {
+                recorders.remove(recorder);
+            }
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            long cumulative = interval[i] + retired[i];
+            interval[i] = cumulative - previous[i];
+            previous[i] = cumulative;
+            total += interval[i];
+        }
+        return new Snapshot(interval, total);
+    }
+
+    /**
+     * @return the threads whose counts are still kept separately
+     */
+    int recordingThreads() {
+        return recorders.size();
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return subBucket << shift;
+    }
+
+    static long highestValueAt(int index) {
+        return index + 1 < BUCKETS ? lowestValueAt(index + 1) - 1 : MAX_VALUE_MICROS;
+    }
+
+    private static final class Recorder {
+        final WeakReference<Thread> owner;
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        Recorder(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean isTerminated() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        Snapshot(long[] counts, long count) {
+            this.counts = counts;
+            this.count = count;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the highest value, in microseconds, equivalent to the given quantile (0..1)
+         */
+        public long valueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValueAt(i);
+                }
+            }
+            return MAX_VALUE_MICROS;
+        }
+
+        public long getMax() {
+            return valueAtQuantile(1.0);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.sherrif.of.nottingham.metrics;
+
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.common.Labels;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-endpoint {@link LatencyHistogram}s exported as percentiles. The observer runs on every
+ * collection of the metric reader, takes the interval snapshot of each endpoint and reports its
+ * p50, p90, p99, p999 and max in microseconds, labelled {@code endpoint} and {@code quantile}.
+ */
+public class LatencyRecorder {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"p50", "p90", "p99", "p999"};
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public LatencyRecorder(Meter meter, String name, String description) {
+        meter.longValueObserverBuilder(name)
+                .setDescription(description)
+                .setUnit("us")
+                .setUpdater(result -> histograms.forEach((endpoint, histogram) -> {
+                    LatencyHistogram.Snapshot snapshot = histogram.intervalSnapshot();
+                    if (snapshot.getCount() == 0) {
+                        return;
+                    }
+                    for (int i = 0; i < QUANTILES.length; i++) {
+                        result.observe(snapshot.valueAtQuantile(QUANTILES[i]),
+                                Labels.of("endpoint", endpoint, "quantile", QUANTILE_LABELS[i]));
+                    }
+                    result.observe(snapshot.getMax(), Labels.of("endpoint", endpoint, "quantile", "max"));
+                }))
+                .build();
+    }
+
+    /**
+     * @param elapsedNanos a {@link System#nanoTime()} difference
+     */
+    public void record(String endpoint, long elapsedNanos) {
+        histogram(endpoint).recordNanos(elapsedNanos);
+    }
+
+    public LatencyHistogram histogram(String endpoint) {
+        LatencyHistogram histogram = histograms.get(endpoint);
+        return histogram != null ? histogram : histograms.computeIfAbsent(endpoint, ignored -> new LatencyHistogram());
+    }
+}
@@ -0,0 +1,144 @@
+package com.sherrif.of.nottingham.services.order;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho-Corasick automaton over case-folded aliases. A scan visits every character of the
+ * input once and reports the canonical name of each alias found on word boundaries.
+ */
+public class AhoCorasickMatcher {
+
+    private final Node root;
+    private final int aliasCount;
+
+    /**
+     * @param aliases alias to canonical name, e.g. "gamestop corp" to "GME"
+     */
+    public AhoCorasickMatcher(Map<String, String> aliases) {
+        BuildNode buildRoot = new BuildNode(0);
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            BuildNode node = buildRoot;
+            String key = alias.getKey();
+            for (int i = 0; i < key.length(); i++) {
+                char c = Character.toLowerCase(key.charAt(i));
+                BuildNode parent = node;
+                node = parent.children.computeIfAbsent(c, ignored -> new BuildNode(parent.depth + 1));
+            }
+            node.canonical = alias.getValue();
+        }
+        this.root = freeze(buildRoot);
+        this.aliasCount = aliases.size();
+        linkFailures();
+    }
+
+    public int size() {
+        return aliasCount;
+    }
+
+    /**
+     * @return the distinct canonical names found in {@code text}, in order of first occurrence
+     */
+    public List<String> match(CharSequence text) {
+        Set<String> matches = null;
+        Node state = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            Node next = state.child(c);
+            while (next == null && state != root) {
+                state = state.failure;
+                next = state.child(c);
+            }
+            state = next == null ? root : next;
+            for (Node output = state.canonical != null ? state : state.output; output != null; output = output.output) {
+                int start = i - output.depth + 1;
+                if (isBoundary(text, start - 1) && isBoundary(text, i + 1)) {
+                    if (matches == null) {
+                        matches = new LinkedHashSet<>();
+                    }
+                    matches.add(output.canonical);
+                }
+            }
+        }
+        return matches == null ? Collections.emptyList() : new ArrayList<>(matches);
+    }
+
+    private static boolean isBoundary(CharSequence text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static Node freeze(BuildNode buildNode) {
+        Node node = new Node(buildNode.depth, buildNode.canonical, buildNode.children.size());
+        int i = 0;
+        // TreeMap iteration keeps keys sorted for the binary search in Node.child
+        for (Map.Entry<Character, BuildNode> child : buildNode.children.entrySet()) {
+            node.keys[i] = child.getKey();
+            node.children[i] = freeze(child.getValue());
+            i++;
+        }
+        return node;
+    }
+
+    private void linkFailures() {
+        Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : root.children) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            for (int i = 0; i < node.keys.length; i++) {
+                char c = node.keys[i];
+                Node child = node.children[i];
+                Node failure = node.failure;
+                while (failure != root && failure.child(c) == null) {
+                    failure = failure.failure;
+                }
+                Node target = failure.child(c);
+                child.failure = target == null || target == child ? root : target;
+                // nearest proper suffix that is itself a complete alias
+                child.output = child.failure.canonical != null ? child.failure : child.failure.output;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static final class BuildNode {
+        final int depth;
+        final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        String canonical;
+
+        BuildNode(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    private static final class Node {
+        final int depth;
+        final String canonical;
+        final char[] keys;
+        final Node[] children;
+        Node failure;
+        Node output;
+
+        Node(int depth, String canonical, int childCount) {
+            this.depth = depth;
+            this.canonical = canonical;
+            this.keys = new char[childCount];
+            this.children = new Node[childCount];
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tags a batch of texts on a fixed pool of workers. All workers go through the same
+ * {@link TagGenerator}, and therefore the same CoreNLP pipeline and tag cache.
+ */
+public class BatchTagger {
+
+    Logger logger = LoggerFactory.getLogger(BatchTagger.class);
+
+    private final TagGenerator tagGenerator;
+    private final ExecutorService workers;
+    private final int maximumBatchSize;
+
+    public BatchTagger(TagGenerator tagGenerator, int workerCount, int maximumBatchSize) {
+        this.tagGenerator = tagGenerator;
+        this.maximumBatchSize = maximumBatchSize;
+        this.workers = Executors.newFixedThreadPool(workerCount,
+                new ThreadFactoryBuilder().setNameFormat("tagging-worker-%d").setDaemon(true).build());
+        logger.info("Batch tagging pool started with {} workers", workerCount);
+    }
+
+    public int getMaximumBatchSize() {
+        return maximumBatchSize;
+    }
+
+    /**
+     * @return the number of mentions of each tag across the whole batch
+     */
+    public Map<String, Long> countMentions(List<String> texts, String identifier)
+            throws InterruptedException, ExecutionException {
+        List<Future<List<String>>> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            results.add(workers.submit(() -> tagGenerator.generateTagsFromUnstructuredInput(text, identifier)));
+        }
+        Map<String, Long> mentions = new HashMap<>();
+        try {
+            for (Future<List<String>> result : results) {
+                for (String tag : result.get()) {
+                    mentions.merge(tag, 1L, Long::sum);
+                }
+            }
+        } finally {
+            // don't leave the rest of a failed batch queued behind other callers
+            for (Future<List<String>> result : results) {
+                result.cancel(true);
+            }
+        }
+        return mentions;
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,95 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import com.sherrif.of.nottingham.dto.StockQuote;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link RestTemplate} based client. Every call blocks the calling thread and returns an already
+ * completed future.
+ */
+public class BlockingDownstreamClient implements DownstreamClient {
+
+    private static final ParameterizedTypeReference<List<EquityOrder>> ORDERS = new ParameterizedTypeReference<>() {
+    };
+
+    private final RestTemplate orderProcessor;
+    private final String orderProcessorUrl;
+    private final RestTemplate subscriptionService;
+    private final String subscriptionServiceUrl;
+    private final MediaType wireFormat;
+
+    /**
+     * @param wireFormat the content type of request and response bodies, JSON or {@code TaglyBinary}
+     */
+    public BlockingDownstreamClient(RestTemplate orderProcessor, String orderProcessorUrl,
+                                    RestTemplate subscriptionService, String subscriptionServiceUrl,
+                                    MediaType wireFormat) {
+        this.orderProcessor = orderProcessor;
+        this.orderProcessorUrl = orderProcessorUrl;
+        this.subscriptionService = subscriptionService;
+        this.subscriptionServiceUrl = subscriptionServiceUrl;
+        this.wireFormat = wireFormat;
+    }
+
+    @Override
+    public CompletableFuture<StockQuote> subscribe(String ticker, HttpHeaders headers) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(subscriptionServiceUrl)
+                .path("/subscriptionService/subscribe");
+        if (ticker != null) {
+            uri.queryParam("ticker", ticker);
+        }
+        headers.setAccept(Collections.singletonList(wireFormat));
+        try {
+            return CompletableFuture.completedFuture(subscriptionService.exchange(uri.toUriString(), HttpMethod.GET,
+                    new HttpEntity<>(headers), StockQuote.class).getBody());
+        } catch (HttpClientErrorException.NotFound e) {
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<EquityOrder> process(EquityOrder order, HttpHeaders headers) {
+        negotiate(headers);
+        try {
+            return CompletableFuture.completedFuture(orderProcessor.postForEntity(
+                    orderProcessorUrl + "/orderProcessor/process", new HttpEntity<>(order, headers), EquityOrder.class).getBody());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<EquityOrder>> processBatch(List<EquityOrder> orders, HttpHeaders headers) {
+        negotiate(headers);
+        try {
+            // declares the body as a list of orders, which the binary converter needs to write it
+            RequestEntity<List<EquityOrder>> request = RequestEntity.post(URI.create(orderProcessorUrl + "/orderProcessor/processBatch"))
+                    .headers(headers)
+                    .body(orders, ORDERS.getType());
+            return CompletableFuture.completedFuture(orderProcessor.exchange(request, ORDERS).getBody());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void negotiate(HttpHeaders headers) {
+        headers.setContentType(wireFormat);
+        headers.setAccept(Collections.singletonList(wireFormat));
+    }
+}
@@ -0,0 +1,29 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import com.sherrif.of.nottingham.dto.StockQuote;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Calls from the order service to order-processor and subscription-service. The headers already
+ * carry the injected trace context, so implementations may complete on any thread.
+ */
+public interface DownstreamClient {
+
+    /**
+     * @param ticker the ticker to quote, or null for the subscription service's default
+     * @return the quote, or null when the subscription service has no quote for the ticker
+     */
+    CompletableFuture<StockQuote> subscribe(String ticker, HttpHeaders headers);
+
+    CompletableFuture<EquityOrder> process(EquityOrder order, HttpHeaders headers);
+
+    /**
+     * @return the processed orders, in the same order as {@code orders}; an order that was not placed
+     * carries its {@link EquityOrder#getRejection() rejection}
+     */
+    CompletableFuture<List<EquityOrder>> processBatch(List<EquityOrder> orders, HttpHeaders headers);
+}
@@ -0,0 +1,143 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dictionary of known organizations (tickers and company names) matched with an
+ * {@link AhoCorasickMatcher}. Each dictionary line is a canonical tag followed by its aliases, all
+ * separated by {@code |}, e.g. {@code GME|GameStop|GameStop Corp}. Lines starting with {@code #}
+ * are comments.
+ *
+ * <p>The dictionary is read from {@code path}, or from the bundled {@code gazetteer.txt} when no
+ * path is configured. A reload swaps in a freshly built automaton, so in-flight scans are never
+ * affected.
+ */
+public class Gazetteer {
+
+    static final String DEFAULT_RESOURCE = "gazetteer.txt";
+
+    Logger logger = LoggerFactory.getLogger(Gazetteer.class);
+
+    private final Path path;
+    private volatile AhoCorasickMatcher matcher;
+    private volatile long lastModified;
+    private ScheduledExecutorService reloader;
+
+    public Gazetteer(String path) {
+        this.path = path == null || path.isEmpty() ? null : Paths.get(path);
+        reload();
+    }
+
+    public List<String> match(CharSequence text) {
+        return matcher.match(text);
+    }
+
+    /**
+     * Re-reads the dictionary and atomically replaces the automaton.
+     *
+     * @return the number of aliases loaded
+     */
+    public synchronized int reload() {
+        long modified = lastModified();
+        Map<String, String> aliases;
+        try (InputStream in = open()) {
+            aliases = parse(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load the gazetteer from " + describe(), e);
+        }
+        this.matcher = new AhoCorasickMatcher(aliases);
+        this.lastModified = modified;
+        logger.info("Gazetteer loaded {} aliases from {}", aliases.size(), describe());
+        return aliases.size();
+    }
+
+    /**
+     * Polls the dictionary file and reloads it whenever its modification time changes.
+     */
+    public synchronized void watch(long intervalSeconds) {
+        if (path == null || intervalSeconds <= 0 || reloader != null) {
+            return;
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("gazetteer-reloader").setDaemon(true).build());
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                if (lastModified() != lastModified) {
+                    reload();
+                }
+            } catch (RuntimeException e) {
+                // keep serving the previous dictionary
+                logger.error("Gazetteer reload from {} failed {}", describe(), String.valueOf(e));
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    static Map<String, String> parse(InputStream in) throws IOException {
+        Map<String, String> aliases = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] names = line.split("\\|");
+            String canonical = names[0].trim();
+            for (String name : names) {
+                String alias = name.trim();
+                if (!alias.isEmpty()) {
+                    aliases.put(alias, canonical);
+                }
+            }
+        }
+        return aliases;
+    }
+
+    private InputStream open() throws IOException {
+        if (path != null) {
+            return Files.newInputStream(path);
+        }
+        InputStream in = Gazetteer.class.getClassLoader().getResourceAsStream(DEFAULT_RESOURCE);
+        if (in == null) {
+            throw new IOException(DEFAULT_RESOURCE + " not found on the classpath");
+        }
+        return in;
+    }
+
+    private long lastModified() {
+        try {
+            return path == null ? 0L : Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private String describe() {
+        return path == null ? "classpath:" + DEFAULT_RESOURCE : path.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of each idempotency key for a fixed window, in a table of at most
+ * {@code maximumSize} keys. The first request with a key places the order; a retry with the same
+ * key gets the original response, and a retry that arrives while the first attempt is still in
+ * flight waits on that attempt. Only successful placements are remembered, so a retry after a
+ * failure places the order again. Reusing a key for a different order is answered with 422.
+ */
+public class IdempotencyStore {
+
+    private final Cache<String, Attempt> attempts;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    public IdempotencyStore(long maximumSize, Duration window) {
+        this.attempts = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    public CompletableFuture<ResponseEntity<EquityOrder>> execute(String key, EquityOrder order,
+                                                                  Supplier<CompletableFuture<ResponseEntity<EquityOrder>>> placement) {
+        Attempt created = new Attempt(order);
+        Attempt attempt;
+        try {
+            attempt = attempts.get(key, () -> created);
+        } catch (ExecutionException e) {
+            // the loader only returns an existing object
+            throw new IllegalStateException(e);
+        }
+        if (attempt != created) {
+            if (!attempt.matches(order)) {
+                conflicts.increment();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build());
+            }
+            if (attempt.response.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+            return attempt.response;
+        }
+        misses.increment();
+        CompletableFuture<ResponseEntity<EquityOrder>> placed;
+        try {
+            placed = placement.get();
+        } catch (RuntimeException e) {
+            placed = CompletableFuture.failedFuture(e);
+        }
+        placed.whenComplete((response, e) -> {
+            if (e != null || !response.getStatusCode().is2xxSuccessful()) {
+                attempts.asMap().remove(key, created);
+            }
+            if (e != null) {
+                created.response.completeExceptionally(e);
+            } else {
+                created.response.complete(response);
+            }
+        });
+        return created.response;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return duplicates that waited on an attempt still in flight
+     */
+    public long coalescedWaiters() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return keys reused for a different order
+     */
+    public long conflicts() {
+        return conflicts.sum();
+    }
+
+    public long size() {
+        return attempts.size();
+    }
+
+    private static final class Attempt {
+        final String ticker;
+        final String region;
+        final String side;
+        final double price;
+        final int units;
+        final CompletableFuture<ResponseEntity<EquityOrder>> response = new CompletableFuture<>();
+
+        Attempt(EquityOrder order) {
+            this.ticker = order.getTicker();
+            this.region = order.getRegion();
+            this.side = order.getSide();
+            this.price = order.getPrice();
+            this.units = order.getUnits();
+        }
+
+        boolean matches(EquityOrder order) {
+            return Objects.equals(ticker, order.getTicker()) && Objects.equals(region, order.getRegion())
+                    && Objects.equals(side, order.getSide()) && price == order.getPrice() && units == order.getUnits();
+        }
+    }
+}
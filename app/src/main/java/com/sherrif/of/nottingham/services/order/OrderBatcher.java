@@ -0,0 +1,175 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Groups concurrent orders into one /processBatch call. A batch is sent as soon as it holds
+ * {@code maximumSize} orders, or {@code lingerMillis} after its first order arrived, whichever
+ * comes first. Each order remembers the span of the caller that placed it so the batch span can
+ * link back to every caller. An order the processor rejects fails only its own caller.
+ */
+public class OrderBatcher {
+
+    Logger logger = LoggerFactory.getLogger(OrderBatcher.class);
+
+    private final boolean enabled;
+    private final int maximumSize;
+    private final long lingerMillis;
+    private final ScheduledExecutorService lingerTimer;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedOrders = new LongAdder();
+
+    private Function<List<PendingOrder>, CompletableFuture<List<EquityOrder>>> sender;
+    // guarded by this
+    private List<PendingOrder> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerFlush;
+
+    public OrderBatcher(boolean enabled, int maximumSize, long lingerMillis) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Order batch size must be positive, was " + maximumSize);
+        }
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+        this.lingerMillis = lingerMillis;
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("order-batch-linger-%d").setDaemon(true).build());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets how a batch is sent downstream. The returned orders must be in the order of the batch.
+     */
+    public synchronized void start(Function<List<PendingOrder>, CompletableFuture<List<EquityOrder>>> sender) {
+        this.sender = sender;
+        if (enabled) {
+            logger.info("Order micro-batching started with batches of up to {} orders and a linger of {} ms",
+                    maximumSize, lingerMillis);
+        }
+    }
+
+    /**
+     * Adds the order to the current batch on behalf of the span current on the calling thread.
+     */
+    public CompletableFuture<EquityOrder> submit(EquityOrder order) {
+        PendingOrder pendingOrder = new PendingOrder(order, Span.current().getSpanContext());
+        List<PendingOrder> full = null;
+        synchronized (this) {
+            if (sender == null) {
+                throw new IllegalStateException("Order batcher has not been started");
+            }
+            pending.add(pendingOrder);
+            if (pending.size() >= maximumSize) {
+                full = takeBatch();
+            } else if (pending.size() == 1) {
+                lingerFlush = lingerTimer.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            // the order that fills the batch sends it from the caller's thread
+            send(full);
+        }
+        return pendingOrder.result;
+    }
+
+    private void flush() {
+        List<PendingOrder> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        send(batch);
+    }
+
+    // caller holds the lock
+    private List<PendingOrder> takeBatch() {
+        List<PendingOrder> batch = pending;
+        pending = new ArrayList<>(maximumSize);
+        if (lingerFlush != null) {
+            lingerFlush.cancel(false);
+            lingerFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(List<PendingOrder> batch) {
+        batches.increment();
+        batchedOrders.add(batch.size());
+        CompletableFuture<List<EquityOrder>> processed;
+        try {
+            processed = sender.apply(batch);
+        } catch (RuntimeException e) {
+            processed = CompletableFuture.failedFuture(e);
+        }
+        processed.whenComplete((orders, e) -> {
+            if (e == null && (orders == null || orders.size() != batch.size())) {
+                e = new IllegalStateException("Expected " + batch.size() + " processed orders but got "
+                        + (orders == null ? 0 : orders.size()));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (e != null) {
+                    batch.get(i).result.completeExceptionally(e);
+                } else if (orders.get(i).getRejection() != null) {
+                    batch.get(i).result.completeExceptionally(
+                            new IllegalStateException("Order rejected: " + orders.get(i).getRejection()));
+                } else {
+                    batch.get(i).result.complete(orders.get(i));
+                }
+            }
+        });
+    }
+
+    public long batches() {
+        return batches.sum();
+    }
+
+    public long batchedOrders() {
+        return batchedOrders.sum();
+    }
+
+    public void shutdown() {
+        lingerTimer.shutdownNow();
+        flush();
+    }
+
+    public static final class PendingOrder {
+        private final EquityOrder order;
+        private final SpanContext caller;
+        private final CompletableFuture<EquityOrder> result = new CompletableFuture<>();
+
+        PendingOrder(EquityOrder order, SpanContext caller) {
+            this.order = order;
+            this.caller = caller;
+        }
+
+        public EquityOrder getOrder() {
+            return order;
+        }
+
+        /**
+         * @return the span that placed the order, invalid if there was none
+         */
+        public SpanContext getCaller() {
+            return caller;
+        }
+    }
+}
@@ -1,46 +1,58 @@
 package com.sherrif.of.nottingham.services.order;
 
-import com.sherrif.of.nottingham.app.ConfigurationUtil;
+import com.sherrif.of.nottingham.app.Telemetry;
+import com.sherrif.of.nottingham.diagnostics.ErrorDiagnostics;
 import com.sherrif.of.nottingham.dto.EquityOrder;
 import com.sherrif.of.nottingham.dto.StockQuote;
+import com.sherrif.of.nottingham.metrics.BoundCounters;
+import com.sherrif.of.nottingham.metrics.HeavyHitters;
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
+import com.sherrif.of.nottingham.metrics.LatencyRecorder;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.metrics.BoundLongCounter;
 import io.opentelemetry.api.metrics.GlobalMetricsProvider;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongValueRecorder;
 import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.api.metrics.common.Labels;
-import io.opentelemetry.api.metrics.common.LabelsBuilder;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.context.propagation.TextMapSetter;
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.swing.filechooser.FileSystemView;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
@@ -48,39 +60,60 @@ import java.util.concurrent.atomic.AtomicLong;
 public class OrderService {
 
     Logger logger = LoggerFactory.getLogger(OrderService.class);
-    // it is important to initialize the OpenTelemetry SDK as early as possible in your application's
-    // lifecycle.
-    private static final OpenTelemetry openTelemetry = ConfigurationUtil.initOpenTelemetry();
-    private static final Meter meter = ConfigurationUtil
-            .initOpenTelemetryMetrics()
-            .get("io.opentelemetry.example.metrics", "0.13.1");
+    // the process's telemetry pipeline, see Telemetry
+    private final OpenTelemetry openTelemetry;
+    private final Meter meter;
+    // Upper bound on the (stock, region) series bound per instrument
+    private static final int MAX_METRIC_SERIES = 1000;
+    // Header carrying the client's idempotency key; the order's idempotencyKey field is used when it is absent
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
     @Autowired
     TagGenerator tagGenerator;
 
     @Autowired
-    RestTemplate restTemplate;
+    Gazetteer gazetteer;
+
+    @Autowired
+    BatchTagger batchTagger;
+
+    @Autowired
+    ShoutOutQueue shoutOutQueue;
+
+    @Autowired
+    HeavyHitters mentions;
+
+    @Value("${tagly.mentions.top-k:20}")
+    int topMentions;
+
+    @Autowired
+    DownstreamClient downstreamClient;
+
+    @Autowired
+    List<PooledHttpTransport> transports;
+
+    @Autowired
+    QuoteCache quoteCache;
+
+    @Autowired
+    OrderBatcher orderBatcher;
+
+    @Autowired
+    IdempotencyStore idempotencyStore;
+
+    @Autowired
+    ErrorDiagnostics diagnostics;
 
     // Calls per minute
-    LongCounter callsPerMinute = meter
-            .longCounterBuilder("calls.per.minute")
-            .setDescription("Calls Per Minute")
-            .setUnit("1").build();
-    // Mentions per minute
-    LongCounter mentionsPerMinute = meter
-            .longCounterBuilder("mentions.per.minute")
-            .setDescription("Mentions Per Minute")
-            .setUnit("1").build();
+    final BoundCounters callsPerMinute;
     // Errors per minute
-    LongCounter errorsPerMinute = meter
-            .longCounterBuilder("errors.per.minute")
-            .setDescription("Errors Per Minute")
-            .setUnit("1").build();
-    // Request Latency
-    LongCounter requestLatency = meter
-            .longCounterBuilder("request.latency.ms")
-            .setDescription("Latency in ms")
-            .setUnit("ms").build();
+    final BoundCounters errorsPerMinute;
+    // Request Latency percentiles per endpoint
+    final LatencyRecorder requestLatency;
+    // Shoutouts rejected because the ingestion queue was full
+    final LongCounter shoutOutsRejected;
+    // Time a shoutout spent queued before a worker picked it up
+    final LongValueRecorder shoutOutQueueWait;
     // Tell OpenTelemetry to inject the context in the HTTP headers
     TextMapSetter<HttpHeaders> setter = new TextMapSetter<HttpHeaders>() {
         @Override
@@ -89,153 +122,497 @@ public class OrderService {
         }
     };
 
+    public OrderService(Telemetry telemetry) {
+        this.openTelemetry = telemetry.getOpenTelemetry();
+        this.meter = telemetry.getMeterProvider().get("io.opentelemetry.example.metrics", "0.13.1");
+        this.callsPerMinute = new BoundCounters(meter
+                .longCounterBuilder("calls.per.minute")
+                .setDescription("Calls Per Minute")
+                .setUnit("1").build(), MAX_METRIC_SERIES);
+        this.errorsPerMinute = new BoundCounters(meter
+                .longCounterBuilder("errors.per.minute")
+                .setDescription("Errors Per Minute")
+                .setUnit("1").build(), MAX_METRIC_SERIES);
+        this.requestLatency = new LatencyRecorder(meter, "request.latency", "Latency in us");
+        this.shoutOutsRejected = meter
+                .longCounterBuilder("shoutout.rejected")
+                .setDescription("Shoutouts Rejected")
+                .setUnit("1").build();
+        this.shoutOutQueueWait = meter
+                .longValueRecorderBuilder("shoutout.queue.wait.ms")
+                .setDescription("Shoutout Queue Wait in ms")
+                .setUnit("ms").build();
+    }
+
+    @PostConstruct
+    void registerDiagnosticsMetrics() {
+        diagnostics.registerMetrics(meter);
+    }
+
+    @PostConstruct
+    void registerTagCacheMetrics() {
+        // Tag cache hits, misses and evictions
+        meter.longSumObserverBuilder("tag.cache.hits")
+                .setDescription("Tag Cache Hits")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(tagGenerator.cacheStats().hitCount(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("tag.cache.misses")
+                .setDescription("Tag Cache Misses")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(tagGenerator.cacheStats().missCount(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("tag.cache.evictions")
+                .setDescription("Tag Cache Evictions")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(tagGenerator.cacheStats().evictionCount(), Labels.empty()))
+                .build();
+    }
+
+    @PostConstruct
+    void registerQuoteCacheMetrics() {
+        // Quote cache hits, misses, callers coalesced onto an in-flight load, and loads cached as not found
+        meter.longSumObserverBuilder("quote.cache.hits")
+                .setDescription("Quote Cache Hits")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteCache.hits(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("quote.cache.misses")
+                .setDescription("Quote Cache Misses")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteCache.misses(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("quote.cache.coalesced")
+                .setDescription("Quote Cache Coalesced Waiters")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteCache.coalescedWaiters(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("quote.cache.not.found")
+                .setDescription("Quote Cache Not Found")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteCache.notFound(), Labels.empty()))
+                .build();
+    }
+
+    @PostConstruct
+    void registerIdempotencyMetrics() {
+        // Retried orders answered from the store, first attempts, retries that waited on an attempt in flight,
+        // and keys reused for a different order
+        meter.longSumObserverBuilder("idempotency.hits")
+                .setDescription("Idempotency Hits")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(idempotencyStore.hits(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("idempotency.misses")
+                .setDescription("Idempotency Misses")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(idempotencyStore.misses(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("idempotency.coalesced")
+                .setDescription("Idempotency Coalesced Retries")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(idempotencyStore.coalescedWaiters(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("idempotency.conflicts")
+                .setDescription("Idempotency Key Conflicts")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(idempotencyStore.conflicts(), Labels.empty()))
+                .build();
+        meter.longValueObserverBuilder("idempotency.keys")
+                .setDescription("Idempotency Keys Held")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(idempotencyStore.size(), Labels.empty()))
+                .build();
+    }
+
+    @PostConstruct
+    void registerMentionMetrics() {
+        // Estimated mentions of the top organizations, with the long tail folded into "other". A gauge, not a
+        // sum: "other" drops when a key enters the top, and estimates move between keys on eviction
+        meter.longValueObserverBuilder("mentions.per.minute")
+                .setDescription("Mentions Per Minute")
+                .setUnit("1")
+                .setUpdater(result -> {
+                    long total = mentions.total();
+                    long top = 0;
+                    for (Map.Entry<String, Long> mention : mentions.top(topMentions).entrySet()) {
+                        result.observe(mention.getValue(), Labels.of("ORGANIZATION", mention.getKey()));
+                        top += mention.getValue();
+                    }
+                    result.observe(Math.max(0, total - top), Labels.of("ORGANIZATION", BoundCounters.OVERFLOW));
+                })
+                .build();
+    }
+
+    @PostConstruct
+    void registerHttpPoolMetrics() {
+        // Connections of each downstream pool by state
+        meter.longValueObserverBuilder("http.pool.connections")
+                .setDescription("HTTP Pool Connections")
+                .setUnit("1")
+                .setUpdater(result -> {
+                    for (PooledHttpTransport transport : transports) {
+                        PoolStats stats = transport.stats();
+                        result.observe(stats.getLeased(), Labels.of("destination", transport.getName(), "state", "leased"));
+                        result.observe(stats.getAvailable(), Labels.of("destination", transport.getName(), "state", "available"));
+                        result.observe(stats.getPending(), Labels.of("destination", transport.getName(), "state", "pending"));
+                        result.observe(stats.getMax(), Labels.of("destination", transport.getName(), "state", "max"));
+                    }
+                })
+                .build();
+        // Time spent waiting for a pooled connection
+        meter.longValueObserverBuilder("http.pool.wait")
+                .setDescription("HTTP Pool Wait in us")
+                .setUnit("us")
+                .setUpdater(result -> {
+                    for (PooledHttpTransport transport : transports) {
+                        LatencyHistogram.Snapshot snapshot = transport.poolWait().intervalSnapshot();
+                        if (snapshot.getCount() == 0) {
+                            continue;
+                        }
+                        result.observe(snapshot.valueAtQuantile(0.5), Labels.of("destination", transport.getName(), "quantile", "p50"));
+                        result.observe(snapshot.valueAtQuantile(0.99), Labels.of("destination", transport.getName(), "quantile", "p99"));
+                        result.observe(snapshot.getMax(), Labels.of("destination", transport.getName(), "quantile", "max"));
+                    }
+                })
+                .build();
+    }
+
+    @PostConstruct
+    void startOrderBatcher() {
+        // Order batches sent to the processor, and the orders they carried
+        meter.longSumObserverBuilder("order.batches")
+                .setDescription("Order Batches")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(orderBatcher.batches(), Labels.empty()))
+                .build();
+        meter.longSumObserverBuilder("order.batched")
+                .setDescription("Orders Batched")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(orderBatcher.batchedOrders(), Labels.empty()))
+                .build();
+        orderBatcher.start(this::sendOrderBatch);
+    }
+
+    @PostConstruct
+    void startShoutOutQueue() {
+        // Shoutout queue depth
+        meter.longValueObserverBuilder("shoutout.queue.depth")
+                .setDescription("Shoutout Queue Depth")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(shoutOutQueue.depth(), Labels.empty()))
+                .build();
+        shoutOutQueue.start(this::processQueuedShoutOut);
+    }
+
     @GetMapping(value="/getQuote/{ticker}", produces = MediaType.TEXT_PLAIN_VALUE)
-    public ResponseEntity<StockQuote> getQuote(@PathVariable("ticker") String ticker) {
-        long startTime = System.currentTimeMillis();
-        StockQuote stockQuote = null;
+    public CompletableFuture<ResponseEntity<StockQuote>> getQuote(@PathVariable("ticker") String ticker) {
+        long startTime = System.nanoTime();
         // OTel Tracing API
         final Tracer tracer = openTelemetry.getTracer("com.sherrif.of.nottingham.order.service.services.OrderService");
         // Start a span
         Span span = tracer.spanBuilder("orderService/getQuote").setSpanKind(SpanKind.CLIENT).startSpan();
+        span.setAttribute("Good", "true");
+        CompletableFuture<StockQuote> quote;
         try (Scope scope = span.makeCurrent()) {
-            try {
-                span.setAttribute("Good", "true");
+            quote = cachedQuote(ticker);
+        }
+        return quote.handle((stockQuote, e) -> {
+            // the downstream call may complete on another thread, restore the span as the current context
+            try (Scope scope = span.makeCurrent()) {
                 // CPM
-                BoundLongCounter cpmRecorder = callsPerMinute.bind(Labels.of("stock", ticker));
-                cpmRecorder.add(1);
-                HttpHeaders headers = new HttpHeaders();
-                headers.set("Header", "value");
-                headers.set("Other-Header", "othervalue");
-                HttpEntity entity = new HttpEntity(ticker,headers);
-                ResponseEntity<StockQuote> response = restTemplate.getForEntity(
-                        "http://order-processor:7072/subscriptionService/subscribe?ticker=" + ticker, StockQuote.class);
-
-                stockQuote = response.getBody();
-                openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), headers, setter);
-                logger.info("Stock quote {}", stockQuote.toString());
+                callsPerMinute.add(1, ticker);
+                if (e != null) {
+                    Throwable cause = unwrap(e);
+                    // EPM
+                    logger.error("traceId {} - Exception during the /getQuote with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(cause));
+                    diagnostics.record(span, cause);
+                    errorsPerMinute.add(1, ticker);
+                    span.setStatus(StatusCode.ERROR, String.valueOf(cause));
+                } else {
+                    logger.info("Stock quote {}", stockQuote);
+                }
+            } finally {
+                span.end();
                 // Latency
-                BoundLongCounter latencyRecorder = requestLatency.bind(Labels.of("stock", ticker));
-                latencyRecorder.add(System.currentTimeMillis() - startTime);
-            } catch (Throwable e) {
-                // EPM
-                logger.error("traceId {} - Exception during the /placeOrder with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(e));
-                BoundLongCounter epmRecorder = errorsPerMinute.bind(Labels.of("stock", ticker));
-                epmRecorder.add(1);
-                span.setAttribute("Stack trace", String.valueOf(e.getStackTrace()));
-                span.setStatus(StatusCode.ERROR, String.valueOf(e.getStackTrace()));
+                requestLatency.record("orderService/getQuote", System.nanoTime() - startTime);
             }
-        } finally {
-            span.end();
-        }
+            if (e == null && stockQuote == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(stockQuote);
+        });
+    }
 
-        return ResponseEntity.ok(stockQuote);
+    /**
+     * The ticker's quote through the cache, loaded with the current trace context. Interns the ticker
+     * only if the subscription service quotes it.
+     */
+    private CompletableFuture<StockQuote> cachedQuote(String ticker) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Header", "value");
+        headers.set("Other-Header", "othervalue");
+        openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), headers, setter);
+        // only the caller that misses the cache calls downstream, with its own trace headers
+        return quoteCache.get(ticker, key -> downstreamClient.subscribe(key, headers));
     }
 
     @PostMapping(path = "/placeOrder", consumes = "application/json", produces = "application/json")
-    public ResponseEntity<EquityOrder> placeOrder(@RequestBody EquityOrder order) {
-        long startTime = System.currentTimeMillis();
-        // CPM
-        BoundLongCounter cpmRecorder = callsPerMinute.bind(Labels.of("stock", order.getTicker(), "region", order.getRegion()));
-        cpmRecorder.add(1);
+    public CompletableFuture<ResponseEntity<EquityOrder>> placeOrder(@RequestBody EquityOrder order,
+                                                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        String key = idempotencyKey != null ? idempotencyKey : order.getIdempotencyKey();
+        if (key == null || key.isEmpty()) {
+            return placeOrderOnce(order);
+        }
+        return idempotencyStore.execute(key, order, () -> placeOrderOnce(order));
+    }
+
+    private CompletableFuture<ResponseEntity<EquityOrder>> placeOrderOnce(EquityOrder order) {
+        long startTime = System.nanoTime();
 
         // OTel Tracing API
         final Tracer tracer = openTelemetry.getTracer("com.sherrif.of.nottingham.order.service.services.OrderService");
         // Start a span
         Span span = tracer.spanBuilder("orderService/placeOrder").setSpanKind(SpanKind.SERVER).startSpan();
-        span.setAttribute("tags.stock",order.getTicker());
-        span.setAttribute("tags.region",order.getRegion());
+        tagOrder(span, order);
 
         // Set the context with the current span
-        EquityOrder equityOrder;
-        try (Scope scope = span.makeCurrent()) {
-            try {
-                logger.info("Calling downstream with order = " + order);
-                equityOrder = downstreamCall(order, tracer);
-                // Latency
-                BoundLongCounter latencyRecorder = requestLatency.bind(Labels.of("stock", order.getTicker(), "region", order.getRegion()));
-                latencyRecorder.add(System.currentTimeMillis() - startTime);
-            } catch (Throwable e) {
-                logger.error("Exception during the /placeOrder with the exception {}", String.valueOf(e), e);
-                span.setAttribute("Stack trace", String.valueOf(e.getStackTrace()));
-                span.setStatus(StatusCode.ERROR, String.valueOf(e.getStackTrace()));
-                // EPM
-                BoundLongCounter epmRecorder = errorsPerMinute.bind(Labels.of("stock", order.getTicker(), "region", order.getRegion()));
-                epmRecorder.add(1);
-                return ResponseEntity.badRequest().build();
+        CompletableFuture<EquityOrder> processed;
+        if (!EquityOrder.isValidSide(order.getSide())) {
+            // the binary format has no room for any other side, and it must not reach the processor as a buy
+            processed = CompletableFuture.failedFuture(new IllegalArgumentException("Invalid side " + order.getSide()));
+        } else if (order.getTicker() == null || order.getTicker().isEmpty()) {
+            processed = CompletableFuture.failedFuture(new IllegalArgumentException("Order needs a ticker"));
+        } else {
+            try (Scope scope = span.makeCurrent()) {
+                // only tickers the subscription service quotes are traded, so only those are ever interned
+                processed = cachedQuote(order.getTicker()).thenCompose(quote -> {
+                    if (quote == null) {
+                        throw new IllegalArgumentException("No quote for ticker " + order.getTicker());
+                    }
+                    // the quote may have loaded on another thread
+                    try (Scope quoted = span.makeCurrent()) {
+                        logger.info("Calling downstream with order = " + order);
+                        return orderBatcher.isEnabled() ? orderBatcher.submit(order) : downstreamCall(order, tracer);
+                    }
+                });
             }
-        } finally {
-            span.end();
         }
-        return ResponseEntity.ok(equityOrder);
+        return processed.handle((equityOrder, e) -> {
+            try (Scope scope = span.makeCurrent()) {
+                if (e == null) {
+                    // quoted and accepted by the processor, so its ticker and region are real
+                    order.internSymbols();
+                }
+                // CPM
+                callsPerMinute.add(1, order.tickerSymbol(), order.regionSymbol());
+                if (e != null) {
+                    Throwable cause = unwrap(e);
+                    if (diagnostics.record(span, cause)) {
+                        logger.error("Exception during the /placeOrder with the exception {}", String.valueOf(cause), cause);
+                    } else {
+                        logger.error("Exception during the /placeOrder with the exception {}", String.valueOf(cause));
+                    }
+                    span.setStatus(StatusCode.ERROR, String.valueOf(cause));
+                    // EPM
+                    errorsPerMinute.add(1, order.tickerSymbol(), order.regionSymbol());
+                    return ResponseEntity.badRequest().<EquityOrder>build();
+                }
+                return ResponseEntity.ok(equityOrder);
+            } finally {
+                span.end();
+                // Latency
+                requestLatency.record("orderService/placeOrder", System.nanoTime() - startTime);
+            }
+        });
     }
 
-    private EquityOrder downstreamCall(EquityOrder order, Tracer tracer) {
+    private CompletableFuture<EquityOrder> downstreamCall(EquityOrder order, Tracer tracer) {
         Span downstreamCallSpan =
                 tracer
                         .spanBuilder("orderProcessor/process/outgoingCall")
                         .setSpanKind(SpanKind.CLIENT)
                         .startSpan();
-        downstreamCallSpan.setAttribute("tags.stock",order.getTicker());
-        downstreamCallSpan.setAttribute("tags.region",order.getRegion());
+        tagOrder(downstreamCallSpan, order);
 
+        CompletableFuture<EquityOrder> processed;
         try (Scope scope = downstreamCallSpan.makeCurrent()) {
 
             HttpHeaders headers = new HttpHeaders();
             headers.set("Header1", "value1");
             headers.set("Other-Header", "othervalue");
-            HttpEntity entity = new HttpEntity(order, headers);
 
             openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), headers, setter);
-            ResponseEntity<EquityOrder> response = restTemplate.postForEntity(
-                    "http://order-processor:7071/orderProcessor/process", entity, EquityOrder.class);
-
-            order = response.getBody();
-            logger.info("Order processed {}", order.toString());
-        } finally {
+            processed = downstreamClient.process(order, headers);
+        }
+        return processed.whenComplete((equityOrder, e) -> {
+            if (e == null) {
+                logger.info("Order processed {}", equityOrder);
+            }
             downstreamCallSpan.end();
+        });
+    }
+
+    private CompletableFuture<List<EquityOrder>> sendOrderBatch(List<OrderBatcher.PendingOrder> batch) {
+        // OTel Tracing API
+        final Tracer tracer = openTelemetry.getTracer("com.sherrif.of.nottingham.order.service.services.OrderService");
+        // The batch serves many traces, so it starts its own and links to every caller
+        SpanBuilder spanBuilder = tracer
+                .spanBuilder("orderProcessor/processBatch/outgoingCall")
+                .setNoParent()
+                .setSpanKind(SpanKind.CLIENT);
+        List<EquityOrder> orders = new ArrayList<>(batch.size());
+        for (OrderBatcher.PendingOrder pending : batch) {
+            orders.add(pending.getOrder());
+            if (pending.getCaller().isValid()) {
+                spanBuilder.addLink(pending.getCaller());
+            }
+        }
+        Span batchSpan = spanBuilder.startSpan();
+        batchSpan.setAttribute("batch.size", batch.size());
+
+        CompletableFuture<List<EquityOrder>> processed;
+        try (Scope scope = batchSpan.makeCurrent()) {
+            HttpHeaders headers = new HttpHeaders();
+            openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), headers, setter);
+            processed = downstreamClient.processBatch(orders, headers);
         }
-        return order;
+        return processed.whenComplete((processedOrders, e) -> {
+            if (e != null) {
+                batchSpan.setStatus(StatusCode.ERROR, String.valueOf(unwrap(e)));
+            }
+            batchSpan.end();
+        });
     }
 
     @PostMapping("/shoutout")
-    public ResponseEntity<Object> shoutOut(@RequestBody String text) {
-        StockQuote stockQuote = null;
+    public CompletableFuture<ResponseEntity<Object>> shoutOut(@RequestBody String text,
+                                                              @RequestParam(value = "ner", defaultValue = "false") boolean forceNer) {
+        if (shoutOutQueue.isEnabled()) {
+            if (shoutOutQueue.offer(text, forceNer)) {
+                return CompletableFuture.completedFuture(ResponseEntity.accepted().build());
+            }
+            shoutOutsRejected.add(1);
+            return CompletableFuture.completedFuture(ResponseEntity.status(shoutOutQueue.getRejectionStatus())
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        }
+        return processShoutOut(text, forceNer).thenApply(ignored -> ResponseEntity.noContent().<Object>build());
+    }
+
+    private void processQueuedShoutOut(ShoutOutQueue.PendingShoutOut pending) {
+        // Queue wait time
+        shoutOutQueueWait.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.getEnqueuedAtNanos()));
+        CompletableFuture<Void> processed;
+        try (Scope scope = pending.getContext().makeCurrent()) {
+            processed = processShoutOut(pending.getText(), pending.isForceNer());
+        }
+        // keeps the number of in-flight shoutouts bounded by the number of workers
+        processed.join();
+    }
+
+    private CompletableFuture<Void> processShoutOut(String text, boolean forceNer) {
+        long startTime = System.nanoTime();
         // OTel Tracing API
         final Tracer tracer = openTelemetry.getTracer("com.sherrif.of.nottingham.order.service.services.OrderService");
         // Start a span
         Span span = tracer.spanBuilder("orderService/shoutOut").setSpanKind(SpanKind.CLIENT).startSpan();
         //Generate tag
-        List<String> tags = tagGenerator.generateTagsFromUnstructuredInput(text, "ORGANIZATION");
+        List<String> tags = tagGenerator.generateTagsFromUnstructuredInput(text, TagGenerator.ORGANIZATION, forceNer);
         span.setAttribute("intelli.tags",tags.toString());
 
-        LabelsBuilder labelsBuilder = Labels.builder();
-        // CPM
+        // Mentions
         for (String tag : tags) {
-            labelsBuilder.put("ORGANIZATION", tag);
+            mentions.add(tag, 1);
         }
-        Labels labels = labelsBuilder.build();
-        BoundLongCounter cpmRecorder = mentionsPerMinute.bind(labels);
-        cpmRecorder.add(new Double(Math.random() * 1000).longValue());
 
         // Set the context with the current span
+        CompletableFuture<StockQuote> quote;
+        try (Scope scope = span.makeCurrent()) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("Header", "value");
+            headers.set("Other-Header", "othervalue");
+            openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), headers, setter);
+            quote = downstreamClient.subscribe(null, headers);
+        }
+        return quote.handle((stockQuote, e) -> {
+            try (Scope scope = span.makeCurrent()) {
+                if (e != null) {
+                    span.setStatus(StatusCode.ERROR, unwrap(e).getMessage());
+                } else {
+                    logger.info(String.valueOf(stockQuote));
+                }
+            } finally {
+                span.end();
+                // Latency
+                requestLatency.record("orderService/shoutOut", System.nanoTime() - startTime);
+            }
+            return null;
+        });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Sets {@code tags.stock} and {@code tags.region} from the order's pre-built symbol attributes.
+     */
+    private static void tagOrder(Span span, EquityOrder order) {
+        if (order.tickerSymbol() != null) {
+            span.setAllAttributes(order.tickerSymbol().getAttributes());
+        }
+        if (order.regionSymbol() != null) {
+            span.setAllAttributes(order.regionSymbol().getAttributes());
+        }
+    }
+
+    @PostMapping(path = "/gazetteer/reload", produces = "application/json")
+    public ResponseEntity<Integer> reloadGazetteer() {
+        try {
+            return ResponseEntity.ok(gazetteer.reload());
+        } catch (RuntimeException e) {
+            logger.error("Gazetteer reload failed {}", String.valueOf(e), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping(path = "/shoutout/batch", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<Map<String, Long>> shoutOutBatch(@RequestBody List<String> texts) {
+        long startTime = System.nanoTime();
+        if (texts.size() > batchTagger.getMaximumBatchSize()) {
+            return ResponseEntity.badRequest().build();
+        }
+        // OTel Tracing API
+        final Tracer tracer = openTelemetry.getTracer("com.sherrif.of.nottingham.order.service.services.OrderService");
+        // Start a span
+        Span span = tracer.spanBuilder("orderService/shoutOutBatch").setSpanKind(SpanKind.SERVER).startSpan();
+        span.setAttribute("batch.size", texts.size());
+        Map<String, Long> batchMentions;
         try (Scope scope = span.makeCurrent()) {
-            try {
-                HttpHeaders headers = new HttpHeaders();
-                headers.set("Header", "value");
-                headers.set("Other-Header", "othervalue");
-                HttpEntity entity = new HttpEntity(headers);
-                openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), headers, setter);
-                ResponseEntity<StockQuote> response = restTemplate.exchange(
-                        "http://subscription-service:7071/subscriptionService/subscribe", HttpMethod.GET, entity, StockQuote.class);
-
-                stockQuote = response.getBody();
-                logger.info(stockQuote.toString());
-            } catch (Throwable e) {
-                span.setStatus(StatusCode.ERROR, e.getMessage());
+            batchMentions = batchTagger.countMentions(texts, TagGenerator.ORGANIZATION);
+            span.setAttribute("intelli.tags", batchMentions.keySet().toString());
+            // Mentions, recorded once per batch
+            for (Map.Entry<String, Long> mention : batchMentions.entrySet()) {
+                mentions.add(mention.getKey(), mention.getValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            span.setStatus(StatusCode.ERROR, "Interrupted while tagging the batch");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Throwable e) {
+            if (diagnostics.record(span, e)) {
+                logger.error("traceId {} - Exception during the /shoutout/batch with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(e), e);
+            } else {
+                logger.error("traceId {} - Exception during the /shoutout/batch with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(e));
             }
+            span.setStatus(StatusCode.ERROR, String.valueOf(e));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         } finally {
             span.end();
+            // Latency
+            requestLatency.record("orderService/shoutOutBatch", System.nanoTime() - startTime);
         }
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.ok(batchMentions);
     }
 }
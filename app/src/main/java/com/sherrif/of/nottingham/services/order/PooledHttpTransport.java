@@ -0,0 +1,213 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.sherrif.of.nottingham.dto.TaglyBinaryDecoder;
+import com.sherrif.of.nottingham.dto.TaglyBinaryEncoder;
+import com.sherrif.of.nottingham.dto.TaglyBinaryHttpMessageConverter;
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
+import io.netty.channel.ChannelOption;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep-alive connection pool to one downstream service, exposed both as a {@link RestTemplate}
+ * (Apache HttpClient) and as a {@link WebClient} (Reactor Netty), each able to speak JSON and
+ * {@code TaglyBinary}. Settings are read from {@code tagly.downstream.<name>.*}:
+ * <ul>
+ *     <li>{@code url} - base URL of the service</li>
+ *     <li>{@code max-connections} - pooled connections to this destination</li>
+ *     <li>{@code connect-timeout-ms}, {@code read-timeout-ms}</li>
+ *     <li>{@code pool-wait-timeout-ms} - how long a request may wait for a free connection</li>
+ *     <li>{@code keep-alive-seconds} - idle time before a pooled connection is closed</li>
+ *     <li>{@code http2} - prefer cleartext HTTP/2 (h2c); only the reactive client supports it</li>
+ * </ul>
+ */
+public class PooledHttpTransport {
+
+    Logger logger = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+    private final String name;
+    private final String url;
+    private final TimedConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ConnectionProvider connectionProvider;
+    private final RestTemplate restTemplate;
+    private final WebClient webClient;
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+
+    public PooledHttpTransport(String name, Environment environment, String defaultUrl,
+                               RestTemplateBuilder restTemplateBuilder, WebClient.Builder webClientBuilder) {
+        String prefix = "tagly.downstream." + name + ".";
+        this.name = name;
+        this.url = environment.getProperty(prefix + "url", defaultUrl);
+        int maxConnections = environment.getProperty(prefix + "max-connections", Integer.class, 200);
+        int connectTimeoutMs = environment.getProperty(prefix + "connect-timeout-ms", Integer.class, 1000);
+        int readTimeoutMs = environment.getProperty(prefix + "read-timeout-ms", Integer.class, 5000);
+        int poolWaitTimeoutMs = environment.getProperty(prefix + "pool-wait-timeout-ms", Integer.class, 1000);
+        long keepAliveSeconds = environment.getProperty(prefix + "keep-alive-seconds", Long.class, 30L);
+        boolean http2 = environment.getProperty(prefix + "http2", Boolean.class, false);
+
+        this.connectionManager = new TimedConnectionManager(poolWait);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setSocketTimeout(readTimeoutMs)
+                        .setConnectionRequestTimeout(poolWaitTimeoutMs)
+                        .build())
+                .setKeepAliveStrategy(keepAliveStrategy(TimeUnit.SECONDS.toMillis(keepAliveSeconds)))
+                .evictIdleConnections(keepAliveSeconds, TimeUnit.SECONDS)
+                .evictExpiredConnections()
+                .build();
+        this.restTemplate = restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .additionalMessageConverters(new TaglyBinaryHttpMessageConverter())
+                .build();
+
+        this.connectionProvider = ConnectionProvider.builder("tagly-" + name)
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(poolWaitTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(keepAliveSeconds))
+                .build();
+        HttpClient reactorClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                .keepAlive(true);
+        if (http2) {
+            reactorClient = reactorClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        this.webClient = webClientBuilder.clone()
+                .baseUrl(url)
+                .clientConnector(new ReactorClientHttpConnector(reactorClient))
+                .codecs(codecs -> {
+                    codecs.customCodecs().register(new TaglyBinaryEncoder());
+                    codecs.customCodecs().register(new TaglyBinaryDecoder());
+                })
+                .build();
+
+        logger.info("HTTP pool to {} at {}: {} connections, connect {} ms, read {} ms, pool wait {} ms, keep-alive {} s{}",
+                name, url, maxConnections, connectTimeoutMs, readTimeoutMs, poolWaitTimeoutMs, keepAliveSeconds,
+                http2 ? ", h2c" : "");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public RestTemplate restTemplate() {
+        return restTemplate;
+    }
+
+    public WebClient webClient() {
+        return webClient;
+    }
+
+    /**
+     * Leased, available and pending counts of the {@link RestTemplate} pool.
+     */
+    public PoolStats stats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Time {@link RestTemplate} requests spent waiting for a pooled connection.
+     */
+    public LatencyHistogram poolWait() {
+        return poolWait;
+    }
+
+    public void shutdown() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close the HTTP pool to {} {}", name, String.valueOf(e));
+        }
+        connectionProvider.dispose();
+    }
+
+    /**
+     * Honours the server's {@code Keep-Alive: timeout=n} and otherwise keeps connections for our default.
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(long defaultMillis) {
+        return (response, context) -> {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Math.min(defaultMillis, Long.parseLong(element.getValue()) * 1000);
+                    } catch (NumberFormatException ignored) {
+                        // fall back to the default
+                    }
+                }
+            }
+            return defaultMillis;
+        };
+    }
+
+    /**
+     * Records how long each connection lease waited on the pool.
+     */
+    private static final class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+        private final LatencyHistogram poolWait;
+
+        TimedConnectionManager(LatencyHistogram poolWait) {
+            this.poolWait = poolWait;
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long startTime = System.nanoTime();
+                    try {
+                        return request.get(timeout, timeUnit);
+                    } finally {
+                        poolWait.recordNanos(System.nanoTime() - startTime);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.sherrif.of.nottingham.dto.StockQuote;
+import com.sherrif.of.nottingham.dto.SymbolTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Per-ticker quote cache in front of the subscription service. A quote is served from the cache
+ * until it is older than the ticker's staleness bound. Concurrent misses for the same ticker share
+ * one downstream call (single flight): the first caller loads, everybody else waits on its future.
+ * A ticker the subscription service has no quote for loads as null, and that answer is cached for
+ * the shorter negative TTL, so requests for unknown tickers do not all go downstream. Failed loads
+ * are not cached. Once the cache holds {@code maximumSize} tickers, expired entries are swept out at
+ * most once per the shorter of the two TTLs, and a load that finds the cache still full is served
+ * without being cached. A ticker that loads a quote is interned in {@link SymbolTable#TICKERS}; one without
+ * a quote never is.
+ */
+public class QuoteCache {
+
+    private final long defaultTtlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, Long> tickerTtlNanos;
+    private final int maximumSize;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long sweepIntervalNanos;
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+
+    /**
+     * @param tickerTtls per-ticker staleness overrides as {@code TICKER:millis,...}, may be empty
+     * @param negativeTtlMillis how long a ticker without a quote is remembered as not found
+     */
+    public QuoteCache(long defaultTtlMillis, String tickerTtls, long negativeTtlMillis, int maximumSize) {
+        this.defaultTtlNanos = TimeUnit.MILLISECONDS.toNanos(defaultTtlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.tickerTtlNanos = parseTickerTtls(tickerTtls);
+        this.maximumSize = maximumSize;
+        this.sweepIntervalNanos = Math.min(defaultTtlNanos, negativeTtlNanos);
+    }
+
+    static Map<String, Long> parseTickerTtls(String tickerTtls) {
+        Map<String, Long> ttls = new HashMap<>();
+        if (tickerTtls == null || tickerTtls.trim().isEmpty()) {
+            return ttls;
+        }
+        for (String tickerTtl : tickerTtls.split(",")) {
+            String[] parts = tickerTtl.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected TICKER:millis but was " + tickerTtl);
+            }
+            ttls.put(parts[0].trim(), TimeUnit.MILLISECONDS.toNanos(Long.parseLong(parts[1].trim())));
+        }
+        return ttls;
+    }
+
+    /**
+     * @return the quote, or null if {@code loader} found none for the ticker
+     */
+    public CompletableFuture<StockQuote> get(String ticker, Function<String, CompletableFuture<StockQuote>> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(ticker);
+        if (entry != null && entry.isUsable(now)) {
+            record(entry);
+            return entry.quote;
+        }
+        if (entries.size() >= maximumSize) {
+            sweep(now);
+        }
+        Entry loading = new Entry();
+        Entry current = entries.compute(ticker, (key, existing) ->
+                existing != null && existing.isUsable(now) ? existing : loading);
+        if (current != loading) {
+            record(current);
+            return current.quote;
+        }
+        misses.increment();
+        // the load runs outside compute() so a blocking client never holds the map's bin lock
+        CompletableFuture<StockQuote> loaded;
+        try {
+            loaded = loader.apply(ticker);
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        }
+        loaded.whenComplete((quote, e) -> {
+            if (e != null || entries.size() > maximumSize) {
+                entries.remove(ticker, loading);
+            } else {
+                if (quote == null) {
+                    notFound.increment();
+                } else {
+                    SymbolTable.TICKERS.intern(ticker);
+                }
+                loading.ttlNanos = quote != null ? ttlNanos(ticker) : negativeTtlNanos;
+                loading.loadedAtNanos = System.nanoTime();
+            }
+            if (e != null) {
+                loading.quote.completeExceptionally(e);
+            } else {
+                loading.quote.complete(quote);
+            }
+        });
+        return loading.quote;
+    }
+
+    /**
+     * Removes expired entries, unless another caller swept within the last interval: a full cache of
+     * entries that have not expired yet would otherwise be scanned on every miss.
+     */
+    private void sweep(long now) {
+        long last = lastSweepNanos.get();
+        if (now - last < sweepIntervalNanos || !lastSweepNanos.compareAndSet(last, now)) {
+            return;
+        }
+        entries.values().removeIf(existing -> existing.isExpired(now));
+    }
+
+    private void record(Entry entry) {
+        if (entry.quote.isDone()) {
+            hits.increment();
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    private long ttlNanos(String ticker) {
+        return tickerTtlNanos.getOrDefault(ticker, defaultTtlNanos);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return callers that waited on another caller's in-flight load instead of calling downstream
+     */
+    public long coalescedWaiters() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return loads that found no quote and were cached as not found
+     */
+    public long notFound() {
+        return notFound.sum();
+    }
+
+    private static final class Entry {
+        final CompletableFuture<StockQuote> quote = new CompletableFuture<>();
+        // 0 while the load is in flight; both written before the future completes
+        volatile long loadedAtNanos;
+        volatile long ttlNanos;
+
+        boolean isUsable(long now) {
+            return !quote.isDone() || !isExpired(now);
+        }
+
+        boolean isExpired(long now) {
+            return quote.isDone() && (quote.isCompletedExceptionally() || now - loadedAtNanos >= ttlNanos);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import com.sherrif.of.nottingham.dto.StockQuote;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link WebClient} based client. Calls return as soon as the request is written and complete on
+ * the Netty event loop, so no request thread waits on order-processor or subscription-service.
+ */
+public class ReactiveDownstreamClient implements DownstreamClient {
+
+    private static final ParameterizedTypeReference<List<EquityOrder>> ORDERS = new ParameterizedTypeReference<>() {
+    };
+
+    private final WebClient orderProcessor;
+    private final WebClient subscriptionService;
+    private final MediaType wireFormat;
+
+    /**
+     * @param wireFormat the content type of request and response bodies, JSON or {@code TaglyBinary}
+     */
+    public ReactiveDownstreamClient(WebClient orderProcessor, WebClient subscriptionService, MediaType wireFormat) {
+        this.orderProcessor = orderProcessor;
+        this.subscriptionService = subscriptionService;
+        this.wireFormat = wireFormat;
+    }
+
+    @Override
+    public CompletableFuture<StockQuote> subscribe(String ticker, HttpHeaders headers) {
+        return subscriptionService.get()
+                .uri(uri -> {
+                    uri.path("/subscriptionService/subscribe");
+                    if (ticker != null) {
+                        uri.queryParam("ticker", ticker);
+                    }
+                    return uri.build();
+                })
+                .headers(requestHeaders -> requestHeaders.addAll(headers))
+                .accept(wireFormat)
+                .retrieve()
+                .bodyToMono(StockQuote.class)
+                // completes with null, like the blocking client
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty())
+                .toFuture();
+    }
+
+    @Override
+    public CompletableFuture<EquityOrder> process(EquityOrder order, HttpHeaders headers) {
+        return orderProcessor.post()
+                .uri("/orderProcessor/process")
+                .headers(requestHeaders -> requestHeaders.addAll(headers))
+                .contentType(wireFormat)
+                .accept(wireFormat)
+                .bodyValue(order)
+                .retrieve()
+                .bodyToMono(EquityOrder.class)
+                .toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<EquityOrder>> processBatch(List<EquityOrder> orders, HttpHeaders headers) {
+        return orderProcessor.post()
+                .uri("/orderProcessor/processBatch")
+                .headers(requestHeaders -> requestHeaders.addAll(headers))
+                .contentType(wireFormat)
+                .accept(wireFormat)
+                // declares the body as a list of orders, which the binary encoder needs to write it
+                .body(Mono.just(orders), ORDERS)
+                .retrieve()
+                .bodyToMono(ORDERS)
+                .toFuture();
+    }
+}
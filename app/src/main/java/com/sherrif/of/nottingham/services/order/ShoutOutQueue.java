@@ -0,0 +1,130 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.opentelemetry.context.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+/**
+ * Bounded hand-off between the /shoutout endpoint and the workers that tag the text and call
+ * downstream. When the queue is full the shoutout is rejected instead of blocking the servlet thread.
+ */
+public class ShoutOutQueue {
+
+    Logger logger = LoggerFactory.getLogger(ShoutOutQueue.class);
+
+    private final boolean enabled;
+    private final BlockingQueue<PendingShoutOut> queue;
+    private final int workerCount;
+    private final HttpStatus rejectionStatus;
+    private final List<Thread> workers = new ArrayList<>();
+
+    public ShoutOutQueue(boolean enabled, int queueDepth, int workerCount, int rejectionStatus) {
+        if (rejectionStatus != HttpStatus.TOO_MANY_REQUESTS.value()
+                && rejectionStatus != HttpStatus.SERVICE_UNAVAILABLE.value()) {
+            throw new IllegalArgumentException("Shoutout rejection status must be 429 or 503, was " + rejectionStatus);
+        }
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.workerCount = workerCount;
+        this.rejectionStatus = HttpStatus.valueOf(rejectionStatus);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public HttpStatus getRejectionStatus() {
+        return rejectionStatus;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    /**
+     * Starts the workers. Each queued shoutout is handed to {@code handler} on a worker thread.
+     */
+    public synchronized void start(Consumer<PendingShoutOut> handler) {
+        if (!enabled || !workers.isEmpty()) {
+            return;
+        }
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("shoutout-worker-%d").setDaemon(true).build();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threadFactory.newThread(() -> drain(handler));
+            workers.add(worker);
+            worker.start();
+        }
+        logger.info("Async shoutout ingestion started with {} workers and a queue depth of {}",
+                workerCount, queue.remainingCapacity());
+    }
+
+    /**
+     * @return false if the queue is full and the shoutout was not accepted
+     */
+    public boolean offer(String text, boolean forceNer) {
+        return queue.offer(new PendingShoutOut(text, forceNer, Context.current(), System.nanoTime()));
+    }
+
+    private void drain(Consumer<PendingShoutOut> handler) {
+        while (!Thread.currentThread().isInterrupted()) {
+            PendingShoutOut pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                handler.accept(pending);
+            } catch (Throwable e) {
+                logger.error("Exception while processing a queued shoutout {}", String.valueOf(e), e);
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        workers.clear();
+    }
+
+    public static class PendingShoutOut {
+        private final String text;
+        private final boolean forceNer;
+        private final Context context;
+        private final long enqueuedAtNanos;
+
+        PendingShoutOut(String text, boolean forceNer, Context context, long enqueuedAtNanos) {
+            this.text = text;
+            this.forceNer = forceNer;
+            this.context = context;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isForceNer() {
+            return forceNer;
+        }
+
+        public Context getContext() {
+            return context;
+        }
+
+        public long getEnqueuedAtNanos() {
+            return enqueuedAtNanos;
+        }
+    }
+}
@@ -1,49 +1,131 @@
 package com.sherrif.of.nottingham.services.order;
 
-import edu.stanford.nlp.simple.Document;
-import edu.stanford.nlp.simple.Sentence;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import edu.stanford.nlp.pipeline.CoreDocument;
+import edu.stanford.nlp.pipeline.CoreEntityMention;
+import edu.stanford.nlp.pipeline.CoreSentence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
 
 public class TagGenerator {
 
-
     public static String text = "Bought six thousand units of GME at 45 USD. Let's squeeze the shorters";
 
-//    public static void main(String[] args) {
-//        // Create a document. No computation is done yet.
-//        Document doc = new Document(text);
-//        for (Sentence sent : doc.sentences()) {  // Will iterate over two sentences
-//            // When we ask for the lemma, it will load and run the part of speech tagger
-//            System.out.println("The third lemma of the sentence '" + sent + "' is " + sent.lemma(2));
-//            // When we ask for the parse, it will load and run the parser
-//            System.out.println("The parse of the sentence '" + sent + "' is " + sent.parse());
-//            // ....nerTags()
-//            List<String> nameEntities = sent.nerTags();
-//            System.out.println("The Named Entity Tags of the sentence '" + sent + "' is" + nameEntities);
-//            List<String> tags = sent.mentions("ORGANIZATION");
-//            System.out.println("Tags generated are " + tags);
-//
-//        }
-//    }
+    public static final String ORGANIZATION = "ORGANIZATION";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    Logger logger = LoggerFactory.getLogger(TagGenerator.class);
+
+    private final TaggingEngine taggingEngine;
+    private final Gazetteer gazetteer;
+    // keyed on a hash of the normalized text and identifier, so repeated messages never hold their text
+    private final Cache<HashCode, List<String>> tagCache;
+
+    public TagGenerator(TaggingEngine taggingEngine) {
+        this(taggingEngine, null, 0, Duration.ZERO);
+    }
+
+    public TagGenerator(TaggingEngine taggingEngine, Gazetteer gazetteer, long maximumCacheSize, Duration cacheTtl) {
+        this.taggingEngine = taggingEngine;
+        this.gazetteer = gazetteer;
+        this.tagCache = CacheBuilder.newBuilder()
+                .maximumSize(maximumCacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+    }
 
     public List<String> generateTagsFromUnstructuredInput(String text, String identifier) {
-        // Create a document. No computation is done yet.
-        Document doc = new Document(text);
-        for (Sentence sent : doc.sentences()) {  // Will iterate over two sentences
-            // When we ask for the lemma, it will load and run the part of speech tagger
-            System.out.println("The third lemma of the sentence '" + sent + "' is " + sent.lemma(2));
-            // When we ask for the parse, it will load and run the parser
-            System.out.println("The parse of the sentence '" + sent + "' is " + sent.parse());
-            // ....nerTags()
-            List<String> nameEntities = sent.nerTags();
-            System.out.println("The Named Entity Tags of the sentence '" + sent + "' is " + nameEntities);
-            List<String> tags = sent.mentions(identifier);
-            System.out.println("Tags generated are-" + tags);
+        return generateTagsFromUnstructuredInput(text, identifier, false);
+    }
+
+    /**
+     * Organizations are first looked up in the gazetteer. The statistical NER only runs when the
+     * gazetteer finds nothing, or when {@code forceNer} is set, in which case both results are merged.
+     */
+    public List<String> generateTagsFromUnstructuredInput(String text, String identifier, boolean forceNer) {
+        List<String> known = gazetteer != null && ORGANIZATION.equals(identifier)
+                ? gazetteer.match(text) : Collections.emptyList();
+        if (!known.isEmpty() && !forceNer) {
+            return known;
+        }
+        List<String> recognized = recognize(text, identifier);
+        if (known.isEmpty()) {
+            return recognized;
+        }
+        Set<String> tags = new LinkedHashSet<>(known);
+        tags.addAll(recognized);
+        return ImmutableList.copyOf(tags);
+    }
+
+    private List<String> recognize(String text, String identifier) {
+        // only the key is normalized: the NER splits sentences on the paragraph breaks the original keeps
+        try {
+            return tagCache.get(cacheKey(normalize(text), identifier), () -> tag(text, identifier));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tagging failed for identifier " + identifier, e.getCause());
+        }
+    }
+
+    public CacheStats cacheStats() {
+        return tagCache.stats();
+    }
+
+    public long cacheSize() {
+        return tagCache.size();
+    }
+
+    static String normalize(String text) {
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    private static HashCode cacheKey(String normalized, String identifier) {
+        return Hashing.sha256().newHasher()
+                .putString(identifier, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(normalized, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    private List<String> tag(String text, String identifier) {
+        CoreDocument doc = taggingEngine.annotate(text);
+        for (CoreSentence sent : doc.sentences()) {
+            List<String> tags = mentions(sent, identifier);
+            logger.debug("Tags generated for the sentence '{}' are {}", sent, tags);
             if (!tags.isEmpty()) {
-                return tags;
+                return ImmutableList.copyOf(tags);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<String> mentions(CoreSentence sent, String identifier) {
+        List<CoreEntityMention> entityMentions = sent.entityMentions();
+        if (entityMentions == null || entityMentions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> tags = new ArrayList<>();
+        for (CoreEntityMention mention : entityMentions) {
+            if (identifier.equals(mention.entityType())) {
+                tags.add(mention.text());
             }
         }
-        return null;
+        return tags;
     }
 }
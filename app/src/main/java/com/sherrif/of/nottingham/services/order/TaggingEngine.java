@@ -0,0 +1,57 @@
+package com.sherrif.of.nottingham.services.order;
+
+import edu.stanford.nlp.pipeline.CoreDocument;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+
+/**
+ * Holds the single CoreNLP pipeline used for tagging. Only the annotators NER depends on are loaded,
+ * so no constituency parse is ever run. {@link StanfordCoreNLP#annotate} is thread-safe, which lets
+ * every request share this instance.
+ */
+public class TaggingEngine {
+
+    public static final String ANNOTATORS = "tokenize,ssplit,pos,lemma,ner";
+
+    Logger logger = LoggerFactory.getLogger(TaggingEngine.class);
+
+    private final StanfordCoreNLP pipeline;
+
+    public TaggingEngine() {
+        this(defaultProperties());
+    }
+
+    public TaggingEngine(Properties properties) {
+        long startTime = System.currentTimeMillis();
+        // annotator models are loaded eagerly here, not on the first request
+        this.pipeline = new StanfordCoreNLP(properties);
+        logger.info("CoreNLP pipeline [{}] loaded in {} ms", properties.getProperty("annotators"),
+                System.currentTimeMillis() - startTime);
+    }
+
+    static Properties defaultProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("annotators", ANNOTATORS);
+        properties.setProperty("ner.applyFineGrained", "false");
+        properties.setProperty("ner.buildEntityMentions", "true");
+        return properties;
+    }
+
+    /**
+     * Runs the pipeline once so the first real request does not pay for class loading and JIT.
+     */
+    public void warmUp(String sample) {
+        long startTime = System.currentTimeMillis();
+        annotate(sample);
+        logger.info("CoreNLP pipeline warmed up in {} ms", System.currentTimeMillis() - startTime);
+    }
+
+    public CoreDocument annotate(String text) {
+        CoreDocument document = new CoreDocument(text);
+        pipeline.annotate(document);
+        return document;
+    }
+}
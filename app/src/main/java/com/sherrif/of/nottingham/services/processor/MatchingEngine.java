@@ -0,0 +1,196 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import com.sherrif.of.nottingham.dto.Fill;
+import com.sherrif.of.nottingham.dto.Symbol;
+import com.sherrif.of.nottingham.dto.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes every order to the matching thread that owns its ticker. Each ticker is assigned to one
+ * of {@code shards} single-threaded executors, so a book only ever has one writer and needs no
+ * locks, while different tickers match in parallel. Tickers are placed and their books found by
+ * {@link SymbolTable} ID, so the hot path never hashes a ticker string.
+ *
+ * <p>Orders are journaled on the matching thread and only matched once their record is durable, in
+ * journal order, so the journal holds every ticker's orders in matching order and replaying it
+ * rebuilds the same books. An order whose record never becomes durable leaves the book untouched.
+ *
+ * <p>Limit orders rest until they are filled: there is no cancellation or expiry yet, so a book only
+ * shrinks through fills and a ticker that stops trading keeps its resting orders in memory.
+ */
+public class MatchingEngine {
+
+    public static final String BUY = EquityOrder.BUY;
+    public static final String SELL = EquityOrder.SELL;
+
+    private final Shard[] shards;
+    private final OrderJournal journal;
+    private final LongAdder matchedOrders = new LongAdder();
+    private final LongAdder fills = new LongAdder();
+
+    public MatchingEngine(int shards, OrderJournal journal) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Matching shards must be positive, was " + shards);
+        }
+        this.journal = journal;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i);
+        }
+    }
+
+    /**
+     * Matches the order on its ticker's thread and records the fills, filled and remaining units on
+     * it. A price of zero or less makes it a market order, which never rests on the book.
+     */
+    public CompletableFuture<EquityOrder> submit(EquityOrder order) {
+        IllegalArgumentException invalid = validate(order);
+        if (invalid != null) {
+            return CompletableFuture.failedFuture(invalid);
+        }
+        // the order service only places orders for quoted tickers
+        order.internSymbols();
+        Shard shard = shards[shardOf(order.tickerSymbol())];
+        CompletableFuture<EquityOrder> matched = new CompletableFuture<>();
+        shard.executor.execute(() -> {
+            CompletableFuture<Void> durable;
+            try {
+                durable = journal.append(order);
+            } catch (RuntimeException e) {
+                matched.completeExceptionally(e);
+                return;
+            }
+            if (journal.getDurability() != OrderJournal.Durability.GROUPED) {
+                // every other durability is settled by the time append returns
+                match(shard, order, matched);
+                return;
+            }
+            // grouped appends complete in journal order, so their matches queue up on the shard in that order too
+            durable.whenComplete((ignored, e) -> {
+                if (e != null) {
+                    matched.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    shard.executor.execute(() -> match(shard, order, matched));
+                } catch (RuntimeException rejected) {
+                    matched.completeExceptionally(rejected);
+                }
+            });
+        });
+        return matched;
+    }
+
+    private void match(Shard shard, EquityOrder order, CompletableFuture<EquityOrder> matched) {
+        try {
+            matched.complete(shard.match(order));
+        } catch (RuntimeException e) {
+            matched.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Matches an order read back from the journal on the calling thread, without journaling it
+     * again. Only for rebuilding the books before the first {@link #submit}; applying each order
+     * in turn keeps a replay of any size from queueing up in memory.
+     */
+    public EquityOrder replay(EquityOrder order) {
+        IllegalArgumentException invalid = validate(order);
+        if (invalid != null) {
+            throw invalid;
+        }
+        order.internSymbols();
+        // the shard threads see these books through the happens-before of their first task
+        return shards[shardOf(order.tickerSymbol())].match(order);
+    }
+
+    private static IllegalArgumentException validate(EquityOrder order) {
+        if (order.getTicker() == null || order.getTicker().isEmpty() || order.getUnits() <= 0
+                || !isValidSide(order.getSide())) {
+            return new IllegalArgumentException("Order needs a ticker, positive units and a side of "
+                    + BUY + " or " + SELL + ", was " + order.getSide() + " " + order.getTicker() + " x " + order.getUnits());
+        }
+        return null;
+    }
+
+    /**
+     * @see EquityOrder#isValidSide
+     */
+    public static boolean isValidSide(String side) {
+        return EquityOrder.isValidSide(side);
+    }
+
+    private int shardOf(Symbol ticker) {
+        int hash = ticker.isInterned() ? ticker.getId() : ticker.getName().hashCode() & Integer.MAX_VALUE;
+        return hash % shards.length;
+    }
+
+    public long matchedOrders() {
+        return matchedOrders.sum();
+    }
+
+    public long fills() {
+        return fills.sum();
+    }
+
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    private final class Shard {
+        final ExecutorService executor;
+        // only touched on this shard's thread; books by ticker ID, and by name for uninterned tickers
+        final OrderBook[] books = new OrderBook[SymbolTable.TICKERS.capacity()];
+        final Map<String, OrderBook> uninternedBooks = new HashMap<>();
+        final OrderBook.Fills bookFills = new OrderBook.Fills();
+
+        Shard(int index) {
+            this.executor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("matching-" + index).setDaemon(true).build());
+        }
+
+        EquityOrder match(EquityOrder order) {
+            OrderBook book = book(order.tickerSymbol());
+            boolean buy = !SELL.equalsIgnoreCase(order.getSide());
+            long limit = order.getPrice() > 0 ? OrderBook.toTicks(order.getPrice())
+                    : buy ? OrderBook.MARKET_BUY : OrderBook.MARKET_SELL;
+            int remaining = book.match(order.getOrderId(), buy, limit, order.getUnits(), bookFills);
+
+            List<Fill> orderFills = new ArrayList<>(bookFills.count());
+            for (int i = 0; i < bookFills.count(); i++) {
+                orderFills.add(new Fill(bookFills.restingOrderId(i), OrderBook.toPrice(bookFills.priceTicks(i)),
+                        bookFills.units(i)));
+            }
+            order.setFills(orderFills);
+            order.setFilledUnits(order.getUnits() - remaining);
+            order.setRemainingUnits(remaining);
+            matchedOrders.increment();
+            fills.add(bookFills.count());
+            return order;
+        }
+
+        OrderBook book(Symbol ticker) {
+            if (!ticker.isInterned()) {
+                return uninternedBooks.computeIfAbsent(ticker.getName(), OrderBook::new);
+            }
+            OrderBook book = books[ticker.getId()];
+            if (book == null) {
+                book = new OrderBook(ticker.getName());
+                books[ticker.getId()] = book;
+            }
+            return book;
+        }
+    }
+}
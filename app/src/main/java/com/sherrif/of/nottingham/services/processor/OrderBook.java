@@ -0,0 +1,265 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import java.util.Arrays;
+
+/**
+ * Limit order book of one ticker with price-time priority. Prices are held as {@code long} ticks
+ * of 1/10000, and every price level is a FIFO of resting orders kept in primitive arrays, so
+ * matching allocates nothing once the arrays have grown to the book's working size.
+ *
+ * <p>Resting orders leave the book only when they are filled; it has no cancellation or expiry.
+ *
+ * <p>Not thread-safe: a book belongs to exactly one matching thread.
+ */
+public class OrderBook {
+
+    public static final long PRICE_SCALE = 10_000;
+    // limits that cross every resting order; market orders use them and never rest
+    public static final long MARKET_BUY = Long.MAX_VALUE;
+    public static final long MARKET_SELL = Long.MIN_VALUE;
+
+    private final String ticker;
+    private final BookSide bids = new BookSide(true);
+    private final BookSide asks = new BookSide(false);
+
+    public OrderBook(String ticker) {
+        this.ticker = ticker;
+    }
+
+    public static long toTicks(double price) {
+        return Math.round(price * PRICE_SCALE);
+    }
+
+    public static double toPrice(long ticks) {
+        return (double) ticks / PRICE_SCALE;
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Matches the order against the opposite side and rests whatever is left at {@code limitTicks},
+     * unless it is a market order.
+     *
+     * @param fills receives one fill per resting order traded against; cleared first
+     * @return the units left unfilled
+     */
+    public int match(long orderId, boolean buy, long limitTicks, int units, Fills fills) {
+        fills.clear();
+        BookSide opposite = buy ? asks : bids;
+        int remaining = units;
+        while (remaining > 0 && !opposite.isEmpty()) {
+            long best = opposite.bestPrice();
+            if (buy ? best > limitTicks : best < limitTicks) {
+                break;
+            }
+            PriceLevel level = opposite.best();
+            while (remaining > 0 && !level.isEmpty()) {
+                int traded = Math.min(remaining, level.headUnits());
+                fills.add(level.headOrderId(), best, traded);
+                level.fill(traded);
+                remaining -= traded;
+            }
+            if (level.isEmpty()) {
+                opposite.removeBest();
+            }
+        }
+        if (remaining > 0 && limitTicks != MARKET_BUY && limitTicks != MARKET_SELL) {
+            (buy ? bids : asks).level(limitTicks).add(orderId, remaining);
+        }
+        return remaining;
+    }
+
+    /**
+     * @return the best bid in ticks, or {@link #MARKET_SELL} when there are no bids
+     */
+    public long bestBid() {
+        return bids.isEmpty() ? MARKET_SELL : bids.bestPrice();
+    }
+
+    /**
+     * @return the best ask in ticks, or {@link #MARKET_BUY} when there are no asks
+     */
+    public long bestAsk() {
+        return asks.isEmpty() ? MARKET_BUY : asks.bestPrice();
+    }
+
+    public int priceLevels() {
+        return bids.size() + asks.size();
+    }
+
+    /**
+     * Fills of the last {@link #match}, in the order they happened. Reused across orders.
+     */
+    public static final class Fills {
+        private long[] restingOrderIds = new long[16];
+        private long[] prices = new long[16];
+        private int[] units = new int[16];
+        private int count;
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(long restingOrderId, long price, int traded) {
+            if (count == units.length) {
+                int capacity = count * 2;
+                restingOrderIds = Arrays.copyOf(restingOrderIds, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                units = Arrays.copyOf(units, capacity);
+            }
+            restingOrderIds[count] = restingOrderId;
+            prices[count] = price;
+            units[count] = traded;
+            count++;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public long restingOrderId(int i) {
+            return restingOrderIds[i];
+        }
+
+        public long priceTicks(int i) {
+            return prices[i];
+        }
+
+        public int units(int i) {
+            return units[i];
+        }
+    }
+
+    /**
+     * Price levels of one side, sorted so the best price is last. Asks are keyed by their negated
+     * price so both sides sort ascending and share the binary search.
+     */
+    private static final class BookSide {
+        private final boolean bids;
+        private long[] keys = new long[32];
+        private PriceLevel[] levels = new PriceLevel[32];
+        private int size;
+        // emptied levels kept for reuse
+        private PriceLevel[] spare = new PriceLevel[32];
+        private int spareCount;
+
+        BookSide(boolean bids) {
+            this.bids = bids;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long bestPrice() {
+            return levels[size - 1].price;
+        }
+
+        PriceLevel best() {
+            return levels[size - 1];
+        }
+
+        void removeBest() {
+            PriceLevel level = levels[--size];
+            levels[size] = null;
+            if (spareCount == spare.length) {
+                spare = Arrays.copyOf(spare, spareCount * 2);
+            }
+            spare[spareCount++] = level;
+        }
+
+        /**
+         * @return the level at {@code price}, created if the side has none
+         */
+        PriceLevel level(long price) {
+            long key = bids ? price : -price;
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else if (keys[mid] > key) {
+                    high = mid - 1;
+                } else {
+                    return levels[mid];
+                }
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+            }
+            // new prices mostly arrive near the top of the book, which is the end of the arrays
+            System.arraycopy(keys, low, keys, low + 1, size - low);
+            System.arraycopy(levels, low, levels, low + 1, size - low);
+            PriceLevel level = spareCount > 0 ? spare[--spareCount] : new PriceLevel();
+            spare[spareCount] = null;
+            level.price = price;
+            keys[low] = key;
+            levels[low] = level;
+            size++;
+            return level;
+        }
+    }
+
+    /**
+     * Resting orders at one price in arrival order, as a ring buffer.
+     */
+    private static final class PriceLevel {
+        long price;
+        private long[] orderIds = new long[8];
+        private int[] units = new int[8];
+        private int head;
+        private int count;
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        void add(long orderId, int remaining) {
+            if (count == units.length) {
+                grow();
+            }
+            int tail = (head + count) & (units.length - 1);
+            orderIds[tail] = orderId;
+            units[tail] = remaining;
+            count++;
+        }
+
+        long headOrderId() {
+            return orderIds[head];
+        }
+
+        int headUnits() {
+            return units[head];
+        }
+
+        void fill(int traded) {
+            units[head] -= traded;
+            if (units[head] == 0) {
+                head = (head + 1) & (units.length - 1);
+                count--;
+            }
+        }
+
+        private void grow() {
+            int capacity = units.length * 2;
+            long[] grownIds = new long[capacity];
+            int[] grownUnits = new int[capacity];
+            for (int i = 0; i < count; i++) {
+                int from = (head + i) & (units.length - 1);
+                grownIds[i] = orderIds[from];
+                grownUnits[i] = units[from];
+            }
+            orderIds = grownIds;
+            units = grownUnits;
+            head = 0;
+        }
+    }
+}
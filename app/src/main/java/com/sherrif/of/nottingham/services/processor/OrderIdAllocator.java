@@ -0,0 +1,97 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues unique, roughly time-ordered 64-bit order IDs, snowflake style:
+ * <pre>
+ *   0 | 41 bits milliseconds since 2021-01-01 | 10 bits node | 12 bits sequence
+ * </pre>
+ * IDs are unique across processor instances as long as every instance has its own node ID, and a
+ * node can issue 4096 IDs per millisecond.
+ *
+ * <p>The last issued timestamp and sequence are packed into one {@link AtomicLong} and advanced
+ * with compare-and-set, so allocation never takes a lock. When the sequence of a millisecond is
+ * used up, or the wall clock steps backwards, the allocator keeps counting from its own last
+ * timestamp instead of reusing one. It only waits for the wall clock once it has run more than
+ * {@code maximumDriftMillis} ahead of it.
+ */
+public class OrderIdAllocator {
+
+    public static final long EPOCH_MILLIS = 1609459200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    Logger logger = LoggerFactory.getLogger(OrderIdAllocator.class);
+
+    private final long node;
+    private final long maximumDriftMillis;
+    // (milliseconds since EPOCH_MILLIS << SEQUENCE_BITS) | sequence of the last issued ID
+    private final AtomicLong last = new AtomicLong();
+
+    public OrderIdAllocator(int nodeId, long maximumDriftMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Order ID node must be between 0 and " + MAX_NODE_ID + ", was " + nodeId);
+        }
+        this.node = (long) nodeId << SEQUENCE_BITS;
+        this.maximumDriftMillis = maximumDriftMillis;
+    }
+
+    public long nextId() {
+        boolean waited = false;
+        while (true) {
+            long current = last.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            long lastMillis = current >>> SEQUENCE_BITS;
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else if (lastMillis - now < maximumDriftMillis) {
+                // same millisecond, or the clock went back: a full sequence carries into the next millisecond
+                next = current + 1;
+            } else {
+                if (!waited) {
+                    logger.warn("Wall clock is {} ms behind the last issued order ID, waiting for it to catch up", lastMillis - now);
+                    waited = true;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            if (last.compareAndSet(current, next)) {
+                return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | node | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Makes every later ID greater than {@code id}, e.g. one replayed from before a restart whose
+     * millisecond and sequence the wall clock could otherwise issue again.
+     */
+    public void advancePast(long id) {
+        long issued = (id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS | (id & SEQUENCE_MASK);
+        long current;
+        while ((current = last.get()) < issued) {
+            if (last.compareAndSet(current, issued)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return when the ID was issued, in milliseconds since the Unix epoch
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+}
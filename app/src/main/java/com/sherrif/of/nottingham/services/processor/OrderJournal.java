@@ -0,0 +1,413 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import com.sherrif.of.nottingham.dto.EquityOrderCodec;
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of accepted orders. Records are appended to memory-mapped segment files as
+ * {@code int length, int crc32, EquityOrderCodec bytes}; a segment that has no room for the next
+ * record is forced to disk and a new one is started. On startup every intact record is replayed in
+ * order, and appending resumes after the last one.
+ *
+ * <p>When an append counts as durable depends on the {@link Durability}:
+ * <ul>
+ *     <li>{@code per-request} - the appending thread forces its own record before returning</li>
+ *     <li>{@code grouped} - a flusher thread forces everything appended since its last force in one
+ *     go and then completes all of those appends, so concurrent requests share an fsync</li>
+ *     <li>{@code async} - appends complete at once and the flusher forces on an interval; a crash
+ *     can lose the last interval</li>
+ *     <li>{@code off} - nothing is written</li>
+ * </ul>
+ * A failed force stops the journal: the records it covered may or may not have reached the disk,
+ * so every later append fails until a restart replays what did.
+ *
+ * <p>There is no checkpoint or retention yet. Segments are never deleted, and startup replays every
+ * order ever journaled, so both disk use and startup time grow with the journal's history.
+ */
+public class OrderJournal {
+
+    public enum Durability {
+        OFF, PER_REQUEST, GROUPED, ASYNC;
+
+        public static Durability parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private static final int HEADER_BYTES = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("orders-(\\d+)\\.journal");
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final Durability durability;
+    private final long asyncIntervalMillis;
+    private final LatencyHistogram appendLatency = new LatencyHistogram();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private volatile LongConsumer fsyncListener = batchSize -> {
+    };
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private final CRC32 crc = new CRC32();
+    private Segment current;
+    private long appendedRecords;
+    private long flushedPosition;
+    private boolean running;
+    private Throwable failure;
+    private Thread flusher;
+
+    public OrderJournal(Path directory, int segmentBytes, Durability durability, long asyncIntervalMillis) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.durability = durability;
+        this.asyncIntervalMillis = asyncIntervalMillis;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Replays every intact record to {@code handler}, oldest first, and opens the journal for appending.
+     *
+     * @return the number of orders replayed
+     */
+    public long open(Consumer<EquityOrder> handler) throws IOException {
+        if (durability == Durability.OFF) {
+            return 0;
+        }
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        long replayed = 0;
+        Segment last = null;
+        for (Path path : segments) {
+            last = new Segment(path, segmentIndex(path), (int) Math.max(Files.size(path), HEADER_BYTES));
+            replayed += replay(last, handler);
+        }
+        synchronized (lock) {
+            current = last != null ? last : new Segment(segmentPath(0), 0, segmentBytes);
+            flushedPosition = current.position();
+            running = true;
+        }
+        logger.info("Order journal in {} replayed {} orders from {} segments, durability {}",
+                directory, replayed, segments.size(), durability);
+        if (durability == Durability.GROUPED || durability == Durability.ASYNC) {
+            flusher = new Thread(this::flush, "order-journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        return replayed;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches()).forEach(segments::add);
+        }
+        segments.sort((a, b) -> Long.compare(segmentIndex(a), segmentIndex(b)));
+        return segments;
+    }
+
+    private long replay(Segment segment, Consumer<EquityOrder> handler) {
+        MappedByteBuffer buffer = segment.buffer;
+        CRC32 checksum = new CRC32();
+        long replayed = 0;
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - offset - HEADER_BYTES) {
+                logger.warn("Order journal segment {} has an invalid record length at {}, ignoring the rest", segment.path, offset);
+                truncate(segment, offset);
+                break;
+            }
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(offset + HEADER_BYTES + length).position(offset + HEADER_BYTES);
+            checksum.reset();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != buffer.getInt(offset + 4)) {
+                logger.warn("Order journal segment {} has a torn record at {}, ignoring the rest", segment.path, offset);
+                truncate(segment, offset);
+                break;
+            }
+            handler.accept(EquityOrderCodec.decode(payload));
+            replayed++;
+            offset += HEADER_BYTES + length;
+        }
+        segment.offset = offset;
+        return replayed;
+    }
+
+    /**
+     * Zeroes everything after the last intact record so stale bytes never follow a newly appended one.
+     */
+    private static void truncate(Segment segment, int offset) {
+        for (int i = offset; i < segment.buffer.capacity(); i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+        segment.buffer.force();
+    }
+
+    /**
+     * Appends the order. The returned future completes once the record is as durable as the
+     * journal's {@link Durability} promises.
+     */
+    public CompletableFuture<Void> append(EquityOrder order) {
+        if (durability == Durability.OFF) {
+            return DURABLE;
+        }
+        long startTime = System.nanoTime();
+        int length = EquityOrderCodec.encodedSize(order);
+        int recordBytes = HEADER_BYTES + length;
+        Segment segment;
+        int offset;
+        CompletableFuture<Void> durable = DURABLE;
+        synchronized (lock) {
+            if (!running) {
+                throw new IllegalStateException("Order journal is not open");
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Order journal stopped after a failed force", failure);
+            }
+            if (current.offset + recordBytes > current.buffer.capacity()) {
+                roll(recordBytes);
+            }
+            segment = current;
+            offset = segment.offset;
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.position(offset + HEADER_BYTES);
+            EquityOrderCodec.encode(order, buffer);
+            buffer.limit(offset + recordBytes).position(offset + HEADER_BYTES);
+            crc.reset();
+            crc.update(buffer);
+            buffer.limit(buffer.capacity());
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.putInt(offset, length);
+            segment.offset = offset + recordBytes;
+            appendedRecords++;
+            if (durability == Durability.GROUPED) {
+                durable = new CompletableFuture<>();
+                waiters.add(new Waiter(segment.position(), startTime, durable));
+                lock.notifyAll();
+            }
+        }
+        if (durability == Durability.PER_REQUEST) {
+            try {
+                segment.buffer.force(offset, recordBytes);
+            } catch (RuntimeException e) {
+                fail(e);
+                throw e;
+            }
+            fsyncListener.accept(1);
+        }
+        if (durability != Durability.GROUPED) {
+            appendLatency.recordNanos(System.nanoTime() - startTime);
+        }
+        return durable;
+    }
+
+    // caller holds the lock
+    private void roll(int recordBytes) {
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Order record of " + recordBytes + " bytes does not fit a journal segment");
+        }
+        // the flusher only forces the current segment, so the full one is forced here
+        try {
+            current.buffer.force();
+        } catch (RuntimeException e) {
+            fail(e);
+            throw e;
+        }
+        long next = current.index + 1;
+        try {
+            current = new Segment(segmentPath(next), next, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Order journal rolled to segment {}", current.path);
+    }
+
+    private void flush() {
+        Segment flushedSegment = null;
+        int flushedOffset = 0;
+        long flushedRecords = 0;
+        while (true) {
+            Segment segment;
+            int offset;
+            long position;
+            long records;
+            synchronized (lock) {
+                try {
+                    if (durability == Durability.ASYNC && running) {
+                        lock.wait(asyncIntervalMillis);
+                    }
+                    while (running && current.position() == flushedPosition) {
+                        lock.wait(durability == Durability.ASYNC ? asyncIntervalMillis : 0);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (current.position() == flushedPosition) {
+                    return;
+                }
+                segment = current;
+                offset = segment.offset;
+                position = segment.position();
+                records = appendedRecords;
+            }
+            try {
+                int from = segment == flushedSegment ? flushedOffset : 0;
+                segment.buffer.force(from, offset - from);
+                flushedSegment = segment;
+                flushedOffset = offset;
+                fsyncListener.accept(records - flushedRecords);
+                flushedRecords = records;
+                synchronized (lock) {
+                    flushedPosition = position;
+                }
+                completeWaiters(position, null);
+            } catch (RuntimeException e) {
+                fail(e);
+                completeWaiters(Long.MAX_VALUE, e);
+                return;
+            }
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        logger.error("Order journal force failed, no more orders are accepted {}", String.valueOf(e), e);
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    private void completeWaiters(long position, Throwable failure) {
+        long now = System.nanoTime();
+        Waiter waiter;
+        while ((waiter = waiters.peek()) != null && waiter.position <= position) {
+            waiters.poll();
+            if (failure != null) {
+                waiter.durable.completeExceptionally(failure);
+            } else {
+                appendLatency.recordNanos(now - waiter.startTime);
+                waiter.durable.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Time from an append starting to it being durable.
+     */
+    public LatencyHistogram appendLatency() {
+        return appendLatency;
+    }
+
+    /**
+     * @param listener called with the number of records made durable by each force
+     */
+    public void onFsync(LongConsumer listener) {
+        this.fsyncListener = listener;
+    }
+
+    public void shutdown() {
+        Thread flushing;
+        Segment last;
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            lock.notifyAll();
+            flushing = flusher;
+            last = current;
+        }
+        if (flushing != null) {
+            try {
+                flushing.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        last.buffer.force();
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("orders-%010d.journal", index));
+    }
+
+    private static long segmentIndex(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a journal segment " + path);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static final class Segment {
+        final Path path;
+        final long index;
+        final MappedByteBuffer buffer;
+        // next append offset; guarded by the journal lock
+        int offset;
+
+        Segment(Path path, long index, int bytes) throws IOException {
+            this.path = path;
+            this.index = index;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // the mapping stays valid after the channel is closed
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            }
+        }
+
+        /**
+         * @return a position that orders every record ever appended, across segments
+         */
+        long position() {
+            return index << 32 | offset;
+        }
+    }
+
+    private static final class Waiter {
+        final long position;
+        final long startTime;
+        final CompletableFuture<Void> durable;
+
+        Waiter(long position, long startTime, CompletableFuture<Void> durable) {
+            this.position = position;
+            this.startTime = startTime;
+            this.durable = durable;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.sherrif.of.nottingham.services.processor;
 
-import com.sherrif.of.nottingham.app.ConfigurationUtil;
+import com.sherrif.of.nottingham.app.Telemetry;
+import com.sherrif.of.nottingham.diagnostics.ErrorDiagnostics;
 import com.sherrif.of.nottingham.dto.EquityOrder;
+import com.sherrif.of.nottingham.dto.TaglyBinary;
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
 import io.opentelemetry.api.OpenTelemetry;
-import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongValueRecorder;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.common.Labels;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
@@ -15,7 +19,9 @@ import io.opentelemetry.context.propagation.TextMapGetter;
 import io.opentelemetry.context.propagation.TextMapPropagator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -26,18 +32,73 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
 
 @RestController
 @RequestMapping("/orderProcessor")
 public class OrderProcessorService {
-    // it is important to initialize the OpenTelemetry SDK as early as possible in your application's
-    // lifecycle.
-    private static final OpenTelemetry openTelemetry = ConfigurationUtil.initOpenTelemetry();
+    // the process's telemetry pipeline, see Telemetry
+    private final OpenTelemetry openTelemetry;
+    private final Meter meter;
 
     Logger logger = LoggerFactory.getLogger(OrderProcessorService.class);
+
+    @Autowired
+    OrderIdAllocator orderIdAllocator;
+
+    @Autowired
+    MatchingEngine matchingEngine;
+
+    @Autowired
+    OrderJournal orderJournal;
+
+    @Autowired
+    ErrorDiagnostics diagnostics;
+
+    // Orders made durable by each journal fsync
+    final LongValueRecorder journalFsyncBatch;
+
+    public OrderProcessorService(Telemetry telemetry) {
+        this.openTelemetry = telemetry.getOpenTelemetry();
+        this.meter = telemetry.getMeterProvider().get("io.opentelemetry.example.metrics", "0.13.1");
+        this.journalFsyncBatch = meter
+                .longValueRecorderBuilder("journal.fsync.batch")
+                .setDescription("Journal Fsync Batch Size")
+                .setUnit("1").build();
+    }
+
+    @PostConstruct
+    void registerDiagnosticsMetrics() {
+        diagnostics.registerMetrics(meter);
+    }
+
+    @PostConstruct
+    void registerJournalMetrics() {
+        // Time from a journal append to the record being durable
+        meter.longValueObserverBuilder("journal.append.latency")
+                .setDescription("Journal Append Latency in us")
+                .setUnit("us")
+                .setUpdater(result -> {
+                    LatencyHistogram.Snapshot snapshot = orderJournal.appendLatency().intervalSnapshot();
+                    if (snapshot.getCount() == 0) {
+                        return;
+                    }
+                    String durability = orderJournal.getDurability().name().toLowerCase(Locale.ROOT);
+                    result.observe(snapshot.valueAtQuantile(0.5), Labels.of("durability", durability, "quantile", "p50"));
+                    result.observe(snapshot.valueAtQuantile(0.99), Labels.of("durability", durability, "quantile", "p99"));
+                    result.observe(snapshot.getMax(), Labels.of("durability", durability, "quantile", "max"));
+                })
+                .build();
+        orderJournal.onFsync(batchSize -> journalFsyncBatch.record(batchSize));
+    }
+
     TextMapGetter<HttpEntity> getter =
             new TextMapGetter<>() {
                 @Override
@@ -55,9 +116,13 @@ public class OrderProcessorService {
             };
 
 
-    @PostMapping(path = "/process", consumes = "application/json", produces = "application/json")
+    @PostMapping(path = "/process", consumes = {"application/json", TaglyBinary.MEDIA_TYPE},
+            produces = {"application/json", TaglyBinary.MEDIA_TYPE})
     public @ResponseBody ResponseEntity<EquityOrder> process(@RequestBody EquityOrder order, @RequestHeader MultiValueMap<String, String> headers) {
         logger.info("/orderProcessor service requested");
+        if (!isValid(order)) {
+            return ResponseEntity.badRequest().build();
+        }
         // OTel Tracing API
         final Tracer tracer =
                 openTelemetry.getTracer("com.sherrif.of.nottingham.order.service.services.OrderProcessorService");
@@ -73,38 +138,117 @@ public class OrderProcessorService {
                         .setParent(extractedContext)
                         .setSpanKind(SpanKind.SERVER)
                         .startSpan();
-        span.setAttribute("tags.stock",order.getTicker());
-        span.setAttribute("tags.region",order.getRegion());
+        tagOrder(span, order);
+
+        // Set the context with the current span
+        try (Scope scope = span.makeCurrent()) {
+            processOrder(order, span).join();
+        } catch (CompletionException e) {
+            // not placed, for instance because the journal failed
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("traceId {} - Order not placed with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(cause));
+            diagnostics.record(span, cause);
+            span.setStatus(StatusCode.ERROR, String.valueOf(cause));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } finally {
+            span.end();
+        }
+        return ResponseEntity.ok(order);
+    }
+
+    @PostMapping(path = "/processBatch", consumes = {"application/json", TaglyBinary.MEDIA_TYPE},
+            produces = {"application/json", TaglyBinary.MEDIA_TYPE})
+    public @ResponseBody ResponseEntity<List<EquityOrder>> processBatch(@RequestBody List<EquityOrder> orders, @RequestHeader MultiValueMap<String, String> headers) {
+        logger.info("/orderProcessor batch of {} requested", orders.size());
+        // OTel Tracing API
+        final Tracer tracer =
+                openTelemetry.getTracer("com.sherrif.of.nottingham.order.service.services.OrderProcessorService");
+        HttpEntity entity = new HttpEntity(orders,headers);
+
+        Context extractedContext = openTelemetry.getPropagators().getTextMapPropagator()
+                .extract(Context.current(), entity, getter);
+
+        // One span for the whole batch; the caller's batch span links back to each order's trace
+        Span span =
+                tracer
+                        .spanBuilder("orderProcessor/processBatch")
+                        .setParent(extractedContext)
+                        .setSpanKind(SpanKind.SERVER)
+                        .startSpan();
+        span.setAttribute("batch.size", orders.size());
+
+        try (Scope scope = span.makeCurrent()) {
+            // orders of different tickers match in parallel, orders of one ticker in batch order;
+            // an order that is not placed is marked rejected instead of failing the others
+            CompletableFuture<?>[] matched = new CompletableFuture<?>[orders.size()];
+            for (int i = 0; i < orders.size(); i++) {
+                EquityOrder order = orders.get(i);
+                if (!isValid(order)) {
+                    order.setRejection("Order needs a ticker, positive units and a side of BUY or SELL");
+                    matched[i] = CompletableFuture.completedFuture(order);
+                    continue;
+                }
+                matched[i] = processOrder(order, span).exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    logger.error("traceId {} - Order of batch not placed with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(cause));
+                    diagnostics.record(span, cause);
+                    order.setRejection(String.valueOf(cause));
+                    return order;
+                });
+            }
+            CompletableFuture.allOf(matched).join();
+        } finally {
+            span.end();
+        }
+        return ResponseEntity.ok(orders);
+    }
+
+    private static boolean isValid(EquityOrder order) {
+        return order.getTicker() != null && !order.getTicker().isEmpty() && order.getUnits() > 0
+                && MatchingEngine.isValidSide(order.getSide());
+    }
+
+    /**
+     * Sets {@code tags.stock} and {@code tags.region} from the order's pre-built symbol attributes.
+     */
+    private static void tagOrder(Span span, EquityOrder order) {
+        if (order.tickerSymbol() != null) {
+            span.setAllAttributes(order.tickerSymbol().getAttributes());
+        }
+        if (order.regionSymbol() != null) {
+            span.setAllAttributes(order.regionSymbol().getAttributes());
+        }
+    }
+
+    /**
+     * Assigns the order its ID and matches it against the book of its ticker. Injected failures are
+     * recorded on {@code span} rather than failing the request.
+     *
+     * @return the order, completed with its fills and remaining units once matched, or failed if it
+     * could not be given an ID or journaled
+     */
+    private CompletableFuture<EquityOrder> processOrder(EquityOrder order, Span span) {
         try {
             handleError(order.getTicker(), span);
         } catch (Exception e) {
             logger.error("traceId {} - Random exception during the orderProcessor/process of : {} for region {}", span.getSpanContext().getTraceId(), order.getTicker(), order.getRegion());
-            Attributes attributes = Attributes.of(AttributeKey.stringKey("stack-trace"), String.valueOf(e));
-            span.addEvent("Order Processor Stack trace", attributes);
+            diagnostics.record(span, e);
             span.setStatus(StatusCode.ERROR, e.getMessage());
         }
         if(order.isErrorFlag()) {
             logger.error("traceId {} - Exception during the /placeOrder due to an input error", span.getSpanContext().getTraceId());
-            Attributes attributes = Attributes.of(AttributeKey.stringKey("stack-trace"), String.valueOf(Thread.getAllStackTraces()));
-            span.addEvent("Order Processor Stack trace", attributes);
+            diagnostics.record(span, "Exception during the /placeOrder due to an input error");
             span.setStatus(StatusCode.ERROR, "Exception during the /placeOrder due to an input error");
         }
 
-        // Set the context with the current span
-        try (Scope scope = span.makeCurrent()) {
-            try {
-                logger.info("created order processor span with id {}", span.getSpanContext());
-                Random random = new Random();
-                order.setOrderId(random.nextInt(10000));
-            } catch (Throwable e) {
-                logger.error("traceId {} - Exception during the /process with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(e));
-                span.setAttribute("Stack trace", String.valueOf(e.getStackTrace()));
-                span.setStatus(StatusCode.ERROR, String.valueOf(e.getStackTrace()));
-            }
-        } finally {
-            span.end();
+        logger.info("created order processor span with id {}", span.getSpanContext());
+        try {
+            order.setOrderId(orderIdAllocator.nextId());
+        } catch (RuntimeException e) {
+            // never journal or match an order under the ID its client sent
+            return CompletableFuture.failedFuture(e);
         }
-        return ResponseEntity.ok(order);
+        return matchingEngine.submit(order);
     }
 
     @GetMapping("/greeting")
@@ -114,8 +258,7 @@ public class OrderProcessorService {
     }
 
     private void handleError(String ticker, Span span) throws Exception {
-        Random random = new Random();
-        if(random.nextInt(10)>5) {
+        if(ThreadLocalRandom.current().nextInt(10)>5) {
             logger.error("traceId {} - Random exception during the transaction processing of : {}", span.getSpanContext().getTraceId(), ticker);
             throw new Exception(String.format("Random exception during the transaction processing of : %s", ticker));
         }
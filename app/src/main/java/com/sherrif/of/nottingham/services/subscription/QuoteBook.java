@@ -0,0 +1,87 @@
+package com.sherrif.of.nottingham.services.subscription;
+
+import com.sherrif.of.nottingham.dto.StockQuote;
+import com.sherrif.of.nottingham.dto.SymbolTable;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Latest quote of every ticker. Each update publishes a new immutable {@link StockQuote} snapshot,
+ * so readers get a consistent quote from a lock-free map read and never see another caller's
+ * ticker. Updates older than the published snapshot are ignored.
+ *
+ * <p>Listeners are called on the publishing thread with every snapshot that becomes current.
+ */
+public class QuoteBook {
+
+    private final ConcurrentMap<String, StockQuote> quotes = new ConcurrentHashMap<>();
+    private final List<Consumer<StockQuote>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param seed initial quotes as {@code TICKER:price,...}, may be empty
+     */
+    public QuoteBook(String seed) {
+        if (seed == null || seed.trim().isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String quote : seed.split(",")) {
+            String[] parts = quote.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected TICKER:price but was " + quote);
+            }
+            publish(new StockQuote(parts[0].trim(), Double.parseDouble(parts[1].trim()), now));
+        }
+    }
+
+    /**
+     * Tickers are matched case-insensitively, with or without a leading {@code $}.
+     */
+    public static String normalize(String ticker) {
+        String symbol = ticker.trim();
+        if (symbol.startsWith("$")) {
+            symbol = symbol.substring(1);
+        }
+        return symbol.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the latest quote, or null if the ticker has never been quoted
+     */
+    public StockQuote get(String ticker) {
+        return quotes.get(normalize(ticker));
+    }
+
+    /**
+     * @return the snapshot that is current after the update
+     */
+    public StockQuote publish(StockQuote update) {
+        String ticker = normalize(update.getTicker());
+        long timestamp = update.getTimestampInMillis() > 0 ? update.getTimestampInMillis() : System.currentTimeMillis();
+        // a new snapshot under the normalized ticker, stamped if the update had no time
+        // the book's tickers are the ones worth interning, see SymbolTable
+        SymbolTable.TICKERS.intern(ticker);
+        StockQuote snapshot = new StockQuote(ticker, update.getPrice(), timestamp);
+        StockQuote current = quotes.merge(ticker, snapshot,
+                (existing, candidate) -> candidate.getTimestampInMillis() >= existing.getTimestampInMillis() ? candidate : existing);
+        if (current == snapshot) {
+            for (Consumer<StockQuote> listener : listeners) {
+                listener.accept(snapshot);
+            }
+        }
+        return current;
+    }
+
+    public void addListener(Consumer<StockQuote> listener) {
+        listeners.add(listener);
+    }
+
+    public int size() {
+        return quotes.size();
+    }
+}
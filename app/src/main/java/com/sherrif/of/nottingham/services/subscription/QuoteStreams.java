@@ -0,0 +1,357 @@
+package com.sherrif.of.nottingham.services.subscription;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sherrif.of.nottingham.dto.StockQuote;
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes quote updates to Server-Sent Events subscribers.
+ *
+ * <p>Each subscriber holds at most one pending quote per ticker: an update that arrives before the
+ * previous one was sent replaces it. A slow consumer therefore only ever receives the latest price
+ * and never builds up a backlog. At most one sender thread works on a subscriber at a time.
+ *
+ * <p>Sends are blocking servlet writes, so every send has a deadline. A watchdog drops a subscriber
+ * whose send has not returned within {@code sendTimeoutMillis}. It also lends the pool a replacement
+ * thread until the write returns, so stalled connections never take delivery away from healthy
+ * ones. The stalled thread is released when the write fails at the connector's write timeout
+ * ({@code server.tomcat.connection-timeout}).
+ *
+ * <p>A stream covers at most {@code maximumTickers} tickers, all of which must be in the
+ * {@link QuoteBook}, so clients cannot create per-ticker state for arbitrary strings.
+ */
+public class QuoteStreams {
+
+    // upper bound on replacement threads, in case a network partition stalls a large share of the subscribers
+    private static final int MAXIMUM_REPLACED_SENDERS = 256;
+    private static final long IDLE = Long.MIN_VALUE;
+    private static final long STALLED = Long.MIN_VALUE + 1;
+    // stalled, and a replacement thread was lent to the pool for it
+    private static final long STALLED_REPLACED = Long.MIN_VALUE + 2;
+
+    Logger logger = LoggerFactory.getLogger(QuoteStreams.class);
+
+    private final QuoteBook quoteBook;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final int maximumSubscribers;
+    private final int maximumTickers;
+    private final int senderThreads;
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService watchdog;
+    // guarded by senders
+    private int replacedSenders;
+    private final ConcurrentMap<String, Set<Subscriber>> subscribersByTicker = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final LatencyHistogram deliveryLag = new LatencyHistogram();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+
+    public QuoteStreams(QuoteBook quoteBook, int senderThreads, long timeoutMillis, long sendTimeoutMillis,
+                        int maximumSubscribers, int maximumTickers) {
+        this.quoteBook = quoteBook;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.maximumSubscribers = maximumSubscribers;
+        this.maximumTickers = maximumTickers;
+        this.senderThreads = senderThreads;
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("quote-stream-sender-%d").setDaemon(true).build());
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("quote-stream-watchdog").setDaemon(true).build());
+        long checkIntervalMillis = Math.max(10, sendTimeoutMillis / 4);
+        watchdog.scheduleWithFixedDelay(this::dropStalled, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        quoteBook.addListener(this::publish);
+    }
+
+    /**
+     * @return whether a stream of {@code tickers} would be accepted: at least one and at most
+     * {@code maximumTickers} distinct tickers, all of them quoted in the {@link QuoteBook}
+     */
+    public boolean accepts(Collection<String> tickers) {
+        Set<String> distinct = new HashSet<>();
+        for (String ticker : tickers) {
+            if (ticker == null || ticker.trim().isEmpty() || quoteBook.get(ticker) == null) {
+                return false;
+            }
+            distinct.add(QuoteBook.normalize(ticker));
+        }
+        return !distinct.isEmpty() && distinct.size() <= maximumTickers;
+    }
+
+    /**
+     * @param tickers tickers that {@link #accepts} allows
+     * @return the emitter to return from the controller, or null when the node is at its subscriber limit
+     */
+    public SseEmitter subscribe(Collection<String> tickers) {
+        if (!accepts(tickers)) {
+            throw new IllegalArgumentException("Quote stream tickers not accepted: " + tickers);
+        }
+        if (subscriberCount.incrementAndGet() > maximumSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, tickers);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        for (String ticker : subscriber.tickers) {
+            // added under the map's lock, so unsubscribe can never remove the set in between
+            subscribersByTicker.compute(ticker, (key, interested) -> {
+                Set<Subscriber> set = interested != null ? interested : ConcurrentHashMap.newKeySet();
+                set.add(subscriber);
+                return set;
+            });
+            // start every stream with the current price
+            StockQuote current = quoteBook.get(ticker);
+            if (current != null) {
+                subscriber.offer(current, System.nanoTime());
+            }
+        }
+        return emitter;
+    }
+
+    void publish(StockQuote quote) {
+        Set<Subscriber> interested = subscribersByTicker.get(quote.getTicker());
+        if (interested == null) {
+            return;
+        }
+        long publishedAt = System.nanoTime();
+        for (Subscriber subscriber : interested) {
+            subscriber.offer(quote, publishedAt);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        for (String ticker : subscriber.tickers) {
+            subscribersByTicker.computeIfPresent(ticker, (key, interested) -> {
+                interested.remove(subscriber);
+                return interested.isEmpty() ? null : interested;
+            });
+        }
+    }
+
+    /**
+     * Drops the subscribers whose send has outlived the deadline. Runs on the watchdog thread, which
+     * must not touch the emitter: its methods lock the emitter the stalled send is holding.
+     */
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.sendStartedAt.get();
+            if (startedAt == IDLE || startedAt == STALLED || startedAt == STALLED_REPLACED
+                    || now - startedAt <= sendTimeoutNanos) {
+                continue;
+            }
+            boolean replaced = replaceSender();
+            if (!subscriber.sendStartedAt.compareAndSet(startedAt, replaced ? STALLED_REPLACED : STALLED)) {
+                // the send returned in the meantime
+                if (replaced) {
+                    releaseSender();
+                }
+                continue;
+            }
+            stalled.increment();
+            logger.debug("Dropping quote stream subscriber stalled for {} ms", (now - startedAt) / 1_000_000);
+            unsubscribe(subscriber);
+            subscriber.pending.clear();
+        }
+    }
+
+    /**
+     * Adds a thread to the sender pool in place of one held by a stalled send.
+     *
+     * @return false if {@link #MAXIMUM_REPLACED_SENDERS} threads are already lent
+     */
+    private boolean replaceSender() {
+        synchronized (senders) {
+            if (replacedSenders == MAXIMUM_REPLACED_SENDERS) {
+                return false;
+            }
+            replacedSenders++;
+            // the maximum may never drop below the core size
+            senders.setMaximumPoolSize(senderThreads + replacedSenders);
+            senders.setCorePoolSize(senderThreads + replacedSenders);
+            return true;
+        }
+    }
+
+    private void releaseSender() {
+        synchronized (senders) {
+            replacedSenders--;
+            senders.setCorePoolSize(senderThreads + replacedSenders);
+            senders.setMaximumPoolSize(senderThreads + replacedSenders);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Time from an update being published to it being written to a subscriber.
+     */
+    public LatencyHistogram deliveryLag() {
+        return deliveryLag;
+    }
+
+    /**
+     * @return how far behind the most lagging subscriber is, in microseconds
+     */
+    public long maximumLagMicros() {
+        long now = System.nanoTime();
+        long oldest = now;
+        for (Subscriber subscriber : subscribers) {
+            for (PendingQuote pending : subscriber.pending.values()) {
+                oldest = Math.min(oldest, pending.publishedAtNanos);
+            }
+        }
+        return (now - oldest) / 1000;
+    }
+
+    /**
+     * @return updates replaced by a newer price before they could be sent
+     */
+    public long coalescedUpdates() {
+        return coalesced.sum();
+    }
+
+    public long deliveredUpdates() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return subscribers dropped because a send missed its deadline
+     */
+    public long stalledSubscribers() {
+        return stalled.sum();
+    }
+
+    public void shutdown() {
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private static final class PendingQuote {
+        final StockQuote quote;
+        final long publishedAtNanos;
+
+        PendingQuote(StockQuote quote, long publishedAtNanos) {
+            this.quote = quote;
+            this.publishedAtNanos = publishedAtNanos;
+        }
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Set<String> tickers = ConcurrentHashMap.newKeySet();
+        // latest unsent quote per ticker
+        final Map<String, PendingQuote> pending = new ConcurrentHashMap<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        // start of the send in progress, IDLE, or STALLED once the watchdog has dropped the subscriber
+        final AtomicLong sendStartedAt = new AtomicLong(IDLE);
+
+        Subscriber(SseEmitter emitter, Collection<String> tickers) {
+            this.emitter = emitter;
+            for (String ticker : tickers) {
+                this.tickers.add(QuoteBook.normalize(ticker));
+            }
+        }
+
+        void offer(StockQuote quote, long publishedAt) {
+            // the newer quote replaces the unsent one but keeps its publish time, so lag shows how far behind we are
+            pending.merge(quote.getTicker(), new PendingQuote(quote, publishedAt), (unsent, latest) -> {
+                coalesced.increment();
+                return new PendingQuote(latest.quote, unsent.publishedAtNanos);
+            });
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // the pool is shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Iterator<Map.Entry<String, PendingQuote>> it = pending.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, PendingQuote> entry = it.next();
+                    PendingQuote next = entry.getValue();
+                    if (!pending.remove(entry.getKey(), next)) {
+                        // replaced while we were iterating, the newer quote is picked up below
+                        continue;
+                    }
+                    long sendState;
+                    sendStartedAt.set(System.nanoTime());
+                    try {
+                        emitter.send(SseEmitter.event().name("quote").data(next.quote, MediaType.APPLICATION_JSON));
+                    } finally {
+                        sendState = sendStartedAt.getAndSet(IDLE);
+                        if (sendState == STALLED_REPLACED) {
+                            releaseSender();
+                        }
+                    }
+                    if (sendState == STALLED || sendState == STALLED_REPLACED) {
+                        throw new TimeoutException("Quote stream send missed its deadline");
+                    }
+                    delivered.increment();
+                    deliveryLag.recordNanos(System.nanoTime() - next.publishedAtNanos);
+                }
+            } catch (IOException | IllegalStateException | TimeoutException e) {
+                logger.debug("Dropping quote stream subscriber {}", String.valueOf(e));
+                unsubscribe(this);
+                pending.clear();
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (!pending.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.sherrif.of.nottingham.services.subscription;
 
-import com.sherrif.of.nottingham.app.ConfigurationUtil;
+import com.sherrif.of.nottingham.app.Telemetry;
+import com.sherrif.of.nottingham.diagnostics.ErrorDiagnostics;
 import com.sherrif.of.nottingham.app.OrderServiceApplication;
 import com.sherrif.of.nottingham.dto.StockQuote;
+import com.sherrif.of.nottingham.dto.TaglyBinary;
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
 import io.opentelemetry.api.OpenTelemetry;
-import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.common.Labels;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
@@ -17,26 +20,41 @@ import io.opentelemetry.context.propagation.TextMapPropagator;
 import org.apache.coyote.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 @RestController
 @RequestMapping("/subscriptionService")
 public class SubscriptionService {
 
-    // it is important to initialize the OpenTelemetry SDK as early as possible in your application's
-    // lifecycle.
-    private static final OpenTelemetry openTelemetry = ConfigurationUtil.initOpenTelemetry();
+    // the process's telemetry pipeline, see Telemetry
+    private final OpenTelemetry openTelemetry;
+    private final Meter meter;
 
     Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
-    private StockQuote stockQuote = new StockQuote();
 
-    private final TextMapPropagator textFormat =
-            openTelemetry.getPropagators().getTextMapPropagator();
+    @Autowired
+    QuoteBook quoteBook;
+
+    @Autowired
+    QuoteStreams quoteStreams;
+
+    @Autowired
+    ErrorDiagnostics diagnostics;
+
+    private final TextMapPropagator textFormat;
     TextMapGetter<HttpEntity> getter =
             new TextMapGetter<>() {
                 @Override
@@ -53,13 +71,60 @@ public class SubscriptionService {
                 }
             };
 
-    public SubscriptionService() {
-        stockQuote.setTicker("GME");
-        stockQuote.setPrice(225);
-        stockQuote.setTimestampInMillis(System.currentTimeMillis());
+    public SubscriptionService(Telemetry telemetry) {
+        this.openTelemetry = telemetry.getOpenTelemetry();
+        this.meter = telemetry.getMeterProvider().get("io.opentelemetry.example.metrics", "0.13.1");
+        this.textFormat = openTelemetry.getPropagators().getTextMapPropagator();
+    }
+
+    @PostConstruct
+    void registerDiagnosticsMetrics() {
+        diagnostics.registerMetrics(meter);
     }
 
-    @GetMapping(value="/subscribe",  produces = "application/json")
+    @PostConstruct
+    void registerQuoteStreamMetrics() {
+        // Open quote streams
+        meter.longValueObserverBuilder("quote.stream.subscribers")
+                .setDescription("Quote Stream Subscribers")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteStreams.subscriberCount(), Labels.empty()))
+                .build();
+        // Quotes written to subscribers
+        meter.longSumObserverBuilder("quote.stream.delivered")
+                .setDescription("Quote Stream Delivered")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteStreams.deliveredUpdates(), Labels.empty()))
+                .build();
+        // Quotes replaced by a newer price before a slow subscriber could take them
+        meter.longSumObserverBuilder("quote.stream.coalesced")
+                .setDescription("Quote Stream Coalesced")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteStreams.coalescedUpdates(), Labels.empty()))
+                .build();
+        // Subscribers dropped because a send missed its deadline
+        meter.longSumObserverBuilder("quote.stream.stalled")
+                .setDescription("Quote Stream Stalled Subscribers")
+                .setUnit("1")
+                .setUpdater(result -> result.observe(quoteStreams.stalledSubscribers(), Labels.empty()))
+                .build();
+        // Publish to delivery lag across subscribers, and how far behind the slowest one is right now
+        meter.longValueObserverBuilder("quote.stream.lag")
+                .setDescription("Quote Stream Lag in us")
+                .setUnit("us")
+                .setUpdater(result -> {
+                    LatencyHistogram.Snapshot snapshot = quoteStreams.deliveryLag().intervalSnapshot();
+                    if (snapshot.getCount() > 0) {
+                        result.observe(snapshot.valueAtQuantile(0.5), Labels.of("quantile", "p50"));
+                        result.observe(snapshot.valueAtQuantile(0.99), Labels.of("quantile", "p99"));
+                        result.observe(snapshot.getMax(), Labels.of("quantile", "max"));
+                    }
+                    result.observe(quoteStreams.maximumLagMicros(), Labels.of("quantile", "pending"));
+                })
+                .build();
+    }
+
+    @GetMapping(value="/subscribe",  produces = {"application/json", TaglyBinary.MEDIA_TYPE})
     public ResponseEntity<StockQuote> subscribeQuote(@RequestParam(value = "ticker", defaultValue = "$GME") String ticker,
                                                      @RequestHeader MultiValueMap<String, String> headers) {
         logger.info("/subscription service requested");
@@ -84,26 +149,57 @@ public class SubscriptionService {
             handleError(ticker, span);
         } catch (Exception e) {
             logger.error("traceId {} - Random exception during the /subscribe of : {}", span.getSpanContext().getTraceId(), ticker);
-            Attributes attributes = Attributes.of(AttributeKey.stringKey("stack-trace"), String.valueOf(e));
-            span.addEvent("Order Processor Stack trace", attributes);
-            span.setAttribute("Stack trace", String.valueOf(e.getStackTrace()));
-            span.setStatus(StatusCode.ERROR, String.valueOf(e.getStackTrace()));
+            diagnostics.record(span, e);
+            span.setStatus(StatusCode.ERROR, String.valueOf(e));
         }
 
         // Set the context with the current span
+        StockQuote stockQuote = null;
         try (Scope scope = span.makeCurrent()) {
             try {
-                this.stockQuote.setTicker(ticker);
+                stockQuote = quoteBook.get(ticker);
                 logger.info("created subscription service span with id {}", span.getSpanContext());
             } catch (Throwable e) {
                 logger.error("traceId {} - Exception during the /process with the exception {}", span.getSpanContext().getTraceId(), String.valueOf(e));
-                span.setAttribute("Stack trace", String.valueOf(e.getStackTrace()));
-                span.setStatus(StatusCode.ERROR, String.valueOf(e.getStackTrace()));
+                diagnostics.record(span, e);
+                span.setStatus(StatusCode.ERROR, String.valueOf(e));
             }
         } finally {
             span.end();
         }
-        return ResponseEntity.ok(this.stockQuote);
+        if (stockQuote == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stockQuote);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamQuotes(@RequestParam(value = "tickers", defaultValue = "$GME") String tickers) {
+        List<String> requested = Arrays.asList(tickers.split(","));
+        if (!quoteStreams.accepts(requested)) {
+            logger.warn("Quote stream tickers unknown or too many, rejecting {}", tickers);
+            return ResponseEntity.badRequest().build();
+        }
+        SseEmitter emitter = quoteStreams.subscribe(requested);
+        if (emitter == null) {
+            logger.warn("Quote stream subscriber limit reached, rejecting {}", tickers);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @PostMapping(path = "/quotes", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<List<StockQuote>> publishQuotes(@RequestBody List<StockQuote> updates) {
+        List<StockQuote> published = new ArrayList<>(updates.size());
+        for (StockQuote update : updates) {
+            if (update.getTicker() == null || update.getTicker().trim().isEmpty()) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        for (StockQuote update : updates) {
+            published.add(quoteBook.publish(update));
+        }
+        return ResponseEntity.ok(published);
     }
 
     private void handleError(String ticker, Span span) throws Exception {
@@ -0,0 +1,71 @@
+package com.sherrif.of.nottingham.telemetry;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.data.DoublePointData;
+import io.opentelemetry.sdk.metrics.data.DoubleSummaryPointData;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+
+import java.util.Collection;
+
+/**
+ * Encodes every point of each collection of metrics and queues them on a {@link TelemetryFileWriter}
+ * as one batch. The writer is shared with the span exporter, so it is not shut down here.
+ */
+public class FileMetricExporter implements MetricExporter {
+
+    private final TelemetryFileWriter writer;
+
+    public FileMetricExporter(TelemetryFileWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<MetricData> metrics) {
+        TelemetryRecordCodec.Batch batch = new TelemetryRecordCodec.Batch();
+        for (MetricData metric : metrics) {
+            String service = TelemetryRecordCodec.serviceName(metric.getResource());
+            String name = metric.getName();
+            switch (metric.getType()) {
+                case LONG_GAUGE:
+                    for (LongPointData point : metric.getLongGaugeData().getPoints()) {
+                        batch.addMetricPoint(service, name, point.getLabels(), point.getEpochNanos(), 1, point.getValue());
+                    }
+                    break;
+                case LONG_SUM:
+                    for (LongPointData point : metric.getLongSumData().getPoints()) {
+                        batch.addMetricPoint(service, name, point.getLabels(), point.getEpochNanos(), 1, point.getValue());
+                    }
+                    break;
+                case DOUBLE_GAUGE:
+                    for (DoublePointData point : metric.getDoubleGaugeData().getPoints()) {
+                        batch.addMetricPoint(service, name, point.getLabels(), point.getEpochNanos(), 1, point.getValue());
+                    }
+                    break;
+                case DOUBLE_SUM:
+                    for (DoublePointData point : metric.getDoubleSumData().getPoints()) {
+                        batch.addMetricPoint(service, name, point.getLabels(), point.getEpochNanos(), 1, point.getValue());
+                    }
+                    break;
+                case SUMMARY:
+                    for (DoubleSummaryPointData point : metric.getDoubleSummaryData().getPoints()) {
+                        batch.addMetricPoint(service, name, point.getLabels(), point.getEpochNanos(), point.getCount(), point.getSum());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return writer.append(batch) ? CompletableResultCode.ofSuccess() : CompletableResultCode.ofFailure();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
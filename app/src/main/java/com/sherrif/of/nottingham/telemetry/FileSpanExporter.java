@@ -0,0 +1,39 @@
+package com.sherrif.of.nottingham.telemetry;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.Collection;
+
+/**
+ * Encodes each batch of spans and queues it on a {@link TelemetryFileWriter}. The export fails when
+ * the writer drops the batch. The writer is shared with the metric exporter, so it is not shut down here.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private final TelemetryFileWriter writer;
+
+    public FileSpanExporter(TelemetryFileWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        TelemetryRecordCodec.Batch batch = new TelemetryRecordCodec.Batch();
+        for (SpanData span : spans) {
+            batch.addSpan(span);
+        }
+        return writer.append(batch) ? CompletableResultCode.ofSuccess() : CompletableResultCode.ofFailure();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
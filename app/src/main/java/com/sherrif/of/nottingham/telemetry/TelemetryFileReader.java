@@ -0,0 +1,143 @@
+package com.sherrif.of.nottingham.telemetry;
+
+import com.sherrif.of.nottingham.metrics.LatencyHistogram;
+import io.opentelemetry.api.trace.StatusCode;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Summarizes the files written by the {@link TelemetryFileWriter} in a directory: spans, traces,
+ * errors and span rate per service, span duration quantiles per service and span name, and the
+ * points and last value of every metric. Files still being written are read up to their last
+ * flushed record.
+ *
+ * <pre>
+ *   TelemetryFileReader [directory]
+ * </pre>
+ */
+public class TelemetryFileReader {
+
+    private static final Pattern FILE_NAME = Pattern.compile("telemetry-\\d+-\\d+\\.bin\\.gz");
+    private static final String NO_PARENT = "0000000000000000";
+
+    private final Map<String, SpanStats> services = new TreeMap<>();
+    private final Map<String, SpanStats> spanNames = new TreeMap<>();
+    private final Map<String, MetricStats> metrics = new TreeMap<>();
+    private int files;
+    private int truncatedFiles;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "telemetry");
+        TelemetryFileReader reader = new TelemetryFileReader();
+        List<Path> paths;
+        try (Stream<Path> listing = Files.list(directory)) {
+            paths = listing.filter(path -> FILE_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            reader.read(path);
+        }
+        reader.print();
+    }
+
+    void read(Path path) throws IOException {
+        files++;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path), 64 * 1024), 64 * 1024))) {
+            Object record;
+            while ((record = TelemetryRecordCodec.read(in)) != null) {
+                if (record instanceof TelemetryRecordCodec.SpanRecord) {
+                    TelemetryRecordCodec.SpanRecord span = (TelemetryRecordCodec.SpanRecord) record;
+                    SpanStats service = services.computeIfAbsent(span.getService(), key -> new SpanStats());
+                    service.add(span);
+                    service.traceIds.add(span.getTraceId());
+                    spanNames.computeIfAbsent(span.getService() + " " + span.getName(), key -> new SpanStats()).add(span);
+                } else {
+                    TelemetryRecordCodec.MetricRecord metric = (TelemetryRecordCodec.MetricRecord) record;
+                    String key = metric.getService() + " " + metric.getName()
+                            + (metric.getLabels().isEmpty() ? "" : " {" + metric.getLabels() + "}");
+                    metrics.computeIfAbsent(key, name -> new MetricStats()).add(metric);
+                }
+            }
+        } catch (EOFException e) {
+            // the writer was still appending to this file, or stopped in the middle of a record
+            truncatedFiles++;
+        }
+    }
+
+    void print() {
+        System.out.printf("%d files, %d ending in a partial record%n%n", files, truncatedFiles);
+        System.out.printf("%-40s %10s %10s %8s %8s %12s%n", "service", "spans", "traces", "roots", "errors", "spans/sec");
+        services.forEach((service, stats) -> System.out.printf("%-40s %,10d %,10d %,8d %,8d %,12.1f%n", service,
+                stats.spans, stats.traceIds.size(), stats.roots, stats.errors, stats.spansPerSecond()));
+
+        System.out.printf("%n%-60s %10s %8s %10s %10s %10s%n", "service span", "spans", "errors", "p50 us", "p99 us", "max us");
+        spanNames.forEach((name, stats) -> {
+            LatencyHistogram.Snapshot durations = stats.durations.intervalSnapshot();
+            System.out.printf("%-60s %,10d %,8d %,10d %,10d %,10d%n", name, stats.spans, stats.errors,
+                    durations.valueAtQuantile(0.5), durations.valueAtQuantile(0.99), durations.getMax());
+        });
+
+        System.out.printf("%n%-80s %8s %16s%n", "service metric {labels}", "points", "last value");
+        metrics.forEach((name, stats) -> System.out.printf("%-80s %,8d %,16.2f%n", name, stats.points, stats.lastValue));
+    }
+
+    private static final class SpanStats {
+        final LatencyHistogram durations = new LatencyHistogram();
+        // only filled per service
+        final Set<String> traceIds = new HashSet<>();
+        long spans;
+        long roots;
+        long errors;
+        long firstStart = Long.MAX_VALUE;
+        long lastEnd = Long.MIN_VALUE;
+
+        void add(TelemetryRecordCodec.SpanRecord span) {
+            spans++;
+            if (NO_PARENT.equals(span.getParentSpanId())) {
+                roots++;
+            }
+            if (span.getStatus() == StatusCode.ERROR) {
+                errors++;
+            }
+            durations.recordNanos(span.getEndEpochNanos() - span.getStartEpochNanos());
+            firstStart = Math.min(firstStart, span.getStartEpochNanos());
+            lastEnd = Math.max(lastEnd, span.getEndEpochNanos());
+        }
+
+        double spansPerSecond() {
+            long elapsed = lastEnd - firstStart;
+            return elapsed > 0 ? spans / (elapsed / 1e9) : 0;
+        }
+    }
+
+    private static final class MetricStats {
+        long points;
+        long lastEpochNanos = Long.MIN_VALUE;
+        double lastValue;
+
+        void add(TelemetryRecordCodec.MetricRecord metric) {
+            points++;
+            if (metric.getEpochNanos() >= lastEpochNanos) {
+                lastEpochNanos = metric.getEpochNanos();
+                lastValue = metric.getValue();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.sherrif.of.nottingham.telemetry;
+
+import com.google.common.io.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends {@link TelemetryRecordCodec} batches to gzip files on a writer thread, so the exporters only
+ * encode and enqueue. A file is finished and the next one started once it holds {@code fileBytes}
+ * compressed bytes. Files are named {@code telemetry-<pid>-<index>.bin.gz}, so several processes can
+ * share a directory. The gzip stream is flushed whenever the writer has been idle for
+ * {@code flushIntervalMillis}, which makes records readable before their file is finished. Batches
+ * that find {@code maxQueuedBatches} already waiting are dropped and counted.
+ */
+public class TelemetryFileWriter {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    Logger logger = LoggerFactory.getLogger(TelemetryFileWriter.class);
+
+    private final Path directory;
+    private final long fileBytes;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<TelemetryRecordCodec.Batch> queue;
+    private final LongAdder writtenRecords = new LongAdder();
+    private final LongAdder droppedRecords = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // owned by the writer thread
+    private CountingOutputStream file;
+    private OutputStream out;
+    private long fileIndex;
+
+    public TelemetryFileWriter(Path directory, long fileBytes, int maxQueuedBatches, long flushIntervalMillis)
+            throws IOException {
+        this.directory = directory;
+        this.fileBytes = fileBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(maxQueuedBatches);
+        Files.createDirectories(directory);
+        writer = new Thread(this::write, "telemetry-file-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the batch for writing.
+     *
+     * @return false if the batch was dropped because the queue is full or the writer has shut down
+     */
+    public boolean append(TelemetryRecordCodec.Batch batch) {
+        if (batch.records() == 0) {
+            return true;
+        }
+        if (!running || !queue.offer(batch)) {
+            droppedRecords.add(batch.records());
+            return false;
+        }
+        return true;
+    }
+
+    private void write() {
+        boolean unflushed = false;
+        while (running || !queue.isEmpty()) {
+            TelemetryRecordCodec.Batch batch;
+            try {
+                batch = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                if (batch == null) {
+                    if (unflushed) {
+                        out.flush();
+                        unflushed = false;
+                    }
+                    continue;
+                }
+                if (out == null || file.getCount() >= fileBytes) {
+                    roll();
+                }
+                batch.writeTo(out);
+                writtenRecords.add(batch.records());
+                unflushed = true;
+            } catch (IOException e) {
+                logger.error("Telemetry file write to {} failed {}", directory, String.valueOf(e), e);
+                if (batch != null) {
+                    droppedRecords.add(batch.records());
+                }
+                // start a new file with the next batch rather than append after a partial record
+                close();
+                unflushed = false;
+            }
+        }
+        close();
+    }
+
+    private void roll() throws IOException {
+        close();
+        Path path;
+        do {
+            path = directory.resolve(String.format("telemetry-%d-%06d.bin.gz", ProcessHandle.current().pid(), fileIndex++));
+        } while (Files.exists(path));
+        file = new CountingOutputStream(Files.newOutputStream(path));
+        out = new BufferedOutputStream(new GZIPOutputStream(file, BUFFER_BYTES, true), BUFFER_BYTES);
+        logger.info("Telemetry file writer rolled to {}", path);
+    }
+
+    private void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.error("Telemetry file close in {} failed {}", directory, String.valueOf(e));
+        }
+        out = null;
+        file = null;
+    }
+
+    public long writtenRecords() {
+        return writtenRecords.sum();
+    }
+
+    public long droppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * Writes the batches still queued, finishes the current file and stops the writer.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
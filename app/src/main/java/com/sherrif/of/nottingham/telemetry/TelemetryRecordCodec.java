@@ -0,0 +1,244 @@
+package com.sherrif.of.nottingham.telemetry;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.metrics.common.Labels;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Length-prefixed binary records of the spans and metric points written by the file exporters,
+ * big-endian:
+ * <pre>
+ *   int length, then length bytes of
+ *   span:   byte 1, string service, string name, string traceId, string spanId, string parentSpanId,
+ *           byte kind, byte status, long startEpochNanos, long endEpochNanos
+ *   metric: byte 2, string service, string name, string labels, long epochNanos, long count, double value
+ * </pre>
+ * Strings are written as by {@link DataOutput#writeUTF}. Kind and status are the ordinals of
+ * {@code SpanKind} and {@code StatusCode}. Labels are {@code key=value} pairs joined by commas. Sum
+ * and gauge points have a count of 1; summary points carry their count and sum. Records of an
+ * unknown type are skipped by their length.
+ */
+public final class TelemetryRecordCodec {
+
+    static final byte SPAN = 1;
+    static final byte METRIC = 2;
+
+    private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+
+    private TelemetryRecordCodec() {
+    }
+
+    static String serviceName(Resource resource) {
+        String service = resource.getAttributes().get(SERVICE_NAME);
+        return service == null ? "unknown" : service;
+    }
+
+    /**
+     * @return the next record, or null at the end of the stream
+     * @throws EOFException if the stream ends inside a record
+     */
+    public static Object read(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 1) {
+            throw new IOException("Invalid telemetry record length " + length);
+        }
+        byte type = in.readByte();
+        switch (type) {
+            case SPAN:
+                return new SpanRecord(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                        in.readByte(), StatusCode.values()[in.readByte()], in.readLong(), in.readLong());
+            case METRIC:
+                return new MetricRecord(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(), in.readLong(),
+                        in.readDouble());
+            default:
+                in.readFully(new byte[length - 1]);
+                return read(in);
+        }
+    }
+
+    /**
+     * Records encoded together and handed to the {@link TelemetryFileWriter} as one unit.
+     */
+    public static final class Batch {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream record = new DataOutputStream(recordBytes);
+        private int records;
+
+        public void addSpan(SpanData span) {
+            try {
+                record.writeByte(SPAN);
+                record.writeUTF(serviceName(span.getResource()));
+                record.writeUTF(span.getName());
+                record.writeUTF(span.getTraceId());
+                record.writeUTF(span.getSpanId());
+                record.writeUTF(span.getParentSpanId());
+                record.writeByte(span.getKind().ordinal());
+                record.writeByte(span.getStatus().getStatusCode().ordinal());
+                record.writeLong(span.getStartEpochNanos());
+                record.writeLong(span.getEndEpochNanos());
+                endRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void addMetricPoint(String service, String name, Labels labels, long epochNanos, long count,
+                                   double value) {
+            StringBuilder joined = new StringBuilder();
+            labels.forEach((key, labelValue) -> {
+                if (joined.length() > 0) {
+                    joined.append(',');
+                }
+                joined.append(key).append('=').append(labelValue);
+            });
+            try {
+                record.writeByte(METRIC);
+                record.writeUTF(service);
+                record.writeUTF(name);
+                record.writeUTF(joined.toString());
+                record.writeLong(epochNanos);
+                record.writeLong(count);
+                record.writeDouble(value);
+                endRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void endRecord() throws IOException {
+            out.writeInt(recordBytes.size());
+            recordBytes.writeTo(out);
+            recordBytes.reset();
+            records++;
+        }
+
+        public int records() {
+            return records;
+        }
+
+        void writeTo(OutputStream stream) throws IOException {
+            bytes.writeTo(stream);
+        }
+    }
+
+    public static final class SpanRecord {
+        private final String service;
+        private final String name;
+        private final String traceId;
+        private final String spanId;
+        private final String parentSpanId;
+        private final int kind;
+        private final StatusCode status;
+        private final long startEpochNanos;
+        private final long endEpochNanos;
+
+        SpanRecord(String service, String name, String traceId, String spanId, String parentSpanId, int kind,
+                   StatusCode status, long startEpochNanos, long endEpochNanos) {
+            this.service = service;
+            this.name = name;
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.kind = kind;
+            this.status = status;
+            this.startEpochNanos = startEpochNanos;
+            this.endEpochNanos = endEpochNanos;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        public String getSpanId() {
+            return spanId;
+        }
+
+        public String getParentSpanId() {
+            return parentSpanId;
+        }
+
+        public int getKind() {
+            return kind;
+        }
+
+        public StatusCode getStatus() {
+            return status;
+        }
+
+        public long getStartEpochNanos() {
+            return startEpochNanos;
+        }
+
+        public long getEndEpochNanos() {
+            return endEpochNanos;
+        }
+    }
+
+    public static final class MetricRecord {
+        private final String service;
+        private final String name;
+        private final String labels;
+        private final long epochNanos;
+        private final long count;
+        private final double value;
+
+        MetricRecord(String service, String name, String labels, long epochNanos, long count, double value) {
+            this.service = service;
+            this.name = name;
+            this.labels = labels;
+            this.epochNanos = epochNanos;
+            this.count = count;
+            this.value = value;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLabels() {
+            return labels;
+        }
+
+        public long getEpochNanos() {
+            return epochNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.sherrif.of.nottingham.tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+/**
+ * Passes sampled spans to the exporting processor, and also the spans the {@link SpanNameSampler}
+ * recorded without sampling when they end with an {@link StatusCode#ERROR} status. Those are handed
+ * on marked as sampled, since exporting processors skip unsampled spans.
+ */
+public class ErrorKeepingSpanProcessor implements SpanProcessor {
+
+    private final SpanProcessor delegate;
+    private final SpanNameSampler sampler;
+
+    public ErrorKeepingSpanProcessor(SpanProcessor delegate, SpanNameSampler sampler) {
+        this.delegate = delegate;
+        this.sampler = sampler;
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+        if (delegate.isStartRequired()) {
+            delegate.onStart(parentContext, span);
+        }
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return delegate.isStartRequired();
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (span.getSpanContext().isSampled()) {
+            delegate.onEnd(span);
+            return;
+        }
+        SpanData data = span.toSpanData();
+        if (data.getStatus().getStatusCode() == StatusCode.ERROR) {
+            sampler.errorKept(span.getName());
+            delegate.onEnd(new KeptSpan(span, data));
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return delegate.forceFlush();
+    }
+
+    /**
+     * An ended span that reports itself as sampled, with its data captured once.
+     */
+    private static final class KeptSpan implements ReadableSpan {
+        private final ReadableSpan span;
+        private final SpanData data;
+        private final SpanContext spanContext;
+
+        KeptSpan(ReadableSpan span, SpanData data) {
+            this.span = span;
+            this.data = data;
+            SpanContext original = span.getSpanContext();
+            this.spanContext = SpanContext.create(original.getTraceId(), original.getSpanId(),
+                    TraceFlags.getSampled(), original.getTraceState());
+        }
+
+        @Override
+        public SpanContext getSpanContext() {
+            return spanContext;
+        }
+
+        @Override
+        public SpanContext getParentSpanContext() {
+            return span.getParentSpanContext();
+        }
+
+        @Override
+        public String getName() {
+            return span.getName();
+        }
+
+        @Override
+        public SpanData toSpanData() {
+            return data;
+        }
+
+        @Override
+        public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+            return span.getInstrumentationLibraryInfo();
+        }
+
+        @Override
+        public boolean hasEnded() {
+            return true;
+        }
+
+        @Override
+        public long getLatencyNanos() {
+            return span.getLatencyNanos();
+        }
+
+        @Override
+        public SpanKind getKind() {
+            return span.getKind();
+        }
+
+        @Override
+        public <T> T getAttribute(AttributeKey<T> key) {
+            return data.getAttributes().get(key);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.sherrif.of.nottingham.tracing;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.common.Labels;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Samples root spans at a ratio chosen by span name, and follows the parent's decision for every
+ * other span, so a trace is kept or dropped as a whole across the services. The decision for a root
+ * is taken from the random low half of its trace ID, like the SDK's trace ID ratio sampler.
+ *
+ * <p>Rates are written {@code spanName=ratio}, comma separated in a property or one per line in a
+ * rates file, with {@code *} for the names not listed, e.g.
+ * {@code orderService/getQuote=0.01,orderService/placeOrder=0.1,*=1}. Names without a rate and
+ * without {@code *} are always sampled.
+ *
+ * <p>With {@code keepErrors} a span that is not sampled is still recorded, and
+ * {@link ErrorKeepingSpanProcessor} exports it anyway if it ends with an error status. That costs
+ * the recording of every span but never loses an error; without it unsampled spans are not recorded.
+ */
+public class SpanNameSampler implements Sampler {
+
+    private static final String DEFAULT_NAME = "*";
+    private static final SamplingResult SAMPLE = SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE);
+    private static final SamplingResult RECORD = SamplingResult.create(SamplingDecision.RECORD_ONLY);
+    private static final SamplingResult DROP = SamplingResult.create(SamplingDecision.DROP);
+
+    Logger logger = LoggerFactory.getLogger(SpanNameSampler.class);
+
+    // replaced, never mutated, on reload
+    private volatile Map<String, Long> bounds = Collections.emptyMap();
+    private volatile long defaultBound = Long.MAX_VALUE;
+    private volatile boolean keepErrors;
+    private final Map<String, Decisions> decisions = new ConcurrentHashMap<>();
+
+    private Path ratesFile;
+    private long lastModified;
+    private ScheduledExecutorService reloader;
+
+    /**
+     * Replaces the rates. A rate missing from {@code rates} falls back to 1 unless {@code *} is given.
+     *
+     * @throws IllegalArgumentException if a rate is malformed or outside [0, 1]
+     */
+    public synchronized void configure(String rates, boolean keepErrors) {
+        Map<String, Double> parsed = parse(rates, ",");
+        apply(parsed);
+        this.keepErrors = keepErrors;
+        logger.info("Trace sampling rates {}, keep errors {}", parsed.isEmpty() ? "all" : parsed, keepErrors);
+    }
+
+    /**
+     * Polls {@code path} and replaces the rates with its contents whenever its modification time
+     * changes. Lines are {@code spanName=ratio}; lines starting with {@code #} are comments.
+     */
+    public synchronized void watch(String path, long intervalSeconds) {
+        if (path == null || path.isEmpty() || intervalSeconds <= 0 || reloader != null) {
+            return;
+        }
+        ratesFile = Paths.get(path);
+        reload();
+        reloader = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("sampling-reloader").setDaemon(true).build());
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                if (lastModified() != lastModified) {
+                    reload();
+                }
+            } catch (RuntimeException e) {
+                // keep sampling at the previous rates
+                logger.error("Trace sampling reload from {} failed {}", ratesFile, String.valueOf(e));
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private synchronized void reload() {
+        if (!Files.exists(ratesFile)) {
+            logger.warn("Trace sampling rates file {} does not exist, keeping the configured rates", ratesFile);
+            lastModified = lastModified();
+            return;
+        }
+        long modified = lastModified();
+        Map<String, Double> parsed;
+        try {
+            parsed = parse(new String(Files.readAllBytes(ratesFile), StandardCharsets.UTF_8), "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read trace sampling rates from " + ratesFile, e);
+        }
+        apply(parsed);
+        lastModified = modified;
+        logger.info("Trace sampling rates {} loaded from {}", parsed, ratesFile);
+    }
+
+    private void apply(Map<String, Double> rates) {
+        Map<String, Long> updated = new HashMap<>();
+        rates.forEach((name, rate) -> updated.put(name, bound(rate)));
+        Long fallback = updated.remove(DEFAULT_NAME);
+        defaultBound = fallback != null ? fallback : Long.MAX_VALUE;
+        bounds = updated;
+    }
+
+    static Map<String, Double> parse(String rates, String separator) {
+        Map<String, Double> parsed = new HashMap<>();
+        if (rates == null) {
+            return parsed;
+        }
+        for (String entry : rates.split(separator)) {
+            entry = entry.trim();
+            if (entry.isEmpty() || entry.startsWith("#")) {
+                continue;
+            }
+            int split = entry.lastIndexOf('=');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Sampling rate must be spanName=ratio, was " + entry);
+            }
+            double rate = Double.parseDouble(entry.substring(split + 1).trim());
+            if (!(rate >= 0 && rate <= 1)) {
+                throw new IllegalArgumentException("Sampling ratio must be between 0 and 1, was " + entry);
+            }
+            parsed.put(entry.substring(0, split).trim(), rate);
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the exclusive upper bound of the trace ID values that are sampled at {@code rate}
+     */
+    private static long bound(double rate) {
+        return rate >= 1 ? Long.MAX_VALUE : (long) (rate * Long.MAX_VALUE);
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                       Attributes attributes, List<LinkData> parentLinks) {
+        SpanContext parent = Span.fromContext(parentContext).getSpanContext();
+        boolean sampled;
+        if (parent.isValid()) {
+            sampled = parent.isSampled();
+        } else {
+            Long bound = bounds.get(name);
+            long limit = bound != null ? bound : defaultBound;
+            sampled = limit == Long.MAX_VALUE || randomPart(traceId) < limit;
+        }
+        Decisions counts = decisions(name);
+        if (sampled) {
+            counts.sampled.increment();
+            return SAMPLE;
+        }
+        counts.dropped.increment();
+        return keepErrors ? RECORD : DROP;
+    }
+
+    /**
+     * @return the low 63 bits of the hex trace ID, which are random for every trace ID generator
+     */
+    private static long randomPart(String traceId) {
+        long value = 0;
+        for (int i = traceId.length() - 16; i < traceId.length(); i++) {
+            value = value << 4 | Character.digit(traceId.charAt(i), 16);
+        }
+        return value & Long.MAX_VALUE;
+    }
+
+    void errorKept(String name) {
+        decisions(name).keptErrors.increment();
+    }
+
+    private Decisions decisions(String name) {
+        Decisions counts = decisions.get(name);
+        return counts != null ? counts : decisions.computeIfAbsent(name, ignored -> new Decisions());
+    }
+
+    @Override
+    public String getDescription() {
+        return "SpanNameSampler{keepErrors=" + keepErrors + "}";
+    }
+
+    /**
+     * Exports {@code tracing.spans}, the running count of spans by {@code span} name and
+     * {@code decision}: {@code sampled}, {@code dropped}, or {@code kept.error} for a dropped span
+     * exported because it failed.
+     */
+    public void registerMetrics(Meter meter) {
+        meter.longSumObserverBuilder("tracing.spans")
+                .setDescription("Spans by Sampling Decision")
+                .setUnit("1")
+                .setUpdater(result -> decisions.forEach((name, counts) -> {
+                    result.observe(counts.sampled.sum(), Labels.of("span", name, "decision", "sampled"));
+                    result.observe(counts.dropped.sum(), Labels.of("span", name, "decision", "dropped"));
+                    result.observe(counts.keptErrors.sum(), Labels.of("span", name, "decision", "kept.error"));
+                }))
+                .build();
+    }
+
+    private long lastModified() {
+        try {
+            return Files.getLastModifiedTime(ratesFile).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    private static final class Decisions {
+        final LongAdder sampled = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder keptErrors = new LongAdder();
+    }
+}
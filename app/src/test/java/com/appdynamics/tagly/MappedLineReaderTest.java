@@ -0,0 +1,87 @@
+package com.appdynamics.tagly;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLineReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsLinesThatCrossTheWindow() throws IOException {
+        // with an 8 byte window "second" starts in the first window and ends in the next one
+        Path file = write("first\nsecond\nthird\n");
+        assertEquals(Arrays.asList("first", "second", "third"), readAll(file, 8));
+        assertEquals(Arrays.asList("first", "second", "third"), readAll(file, MappedLineReader.DEFAULT_WINDOW_SIZE));
+    }
+
+    @Test
+    void stripsCarriageReturns() throws IOException {
+        Path file = write("a\r\nb\r\n\r\nc\r\n");
+        assertEquals(Arrays.asList("a", "b", "", "c"), readAll(file, MappedLineReader.DEFAULT_WINDOW_SIZE));
+        // the first window ends between the \r and the \n
+        assertEquals(Arrays.asList("x", "a"), readAll(write("x\na\r\n"), 4));
+    }
+
+    @Test
+    void readsALastLineWithoutANewline() throws IOException {
+        Path file = write("a\nlast");
+        assertEquals(Arrays.asList("a", "last"), readAll(file, MappedLineReader.DEFAULT_WINDOW_SIZE));
+        assertEquals(Arrays.asList("a", "last"), readAll(file, 4));
+        assertTrue(readAll(write(""), 4).isEmpty());
+    }
+
+    @Test
+    void rejectsALineLongerThanTheWindow() throws IOException {
+        Path file = write("short\nmuch too long\nshort\n");
+        try (MappedLineReader reader = new MappedLineReader(file, 8)) {
+            assertEquals("short", reader.readLine());
+            assertThrows(IOException.class, reader::readLine);
+        }
+        // a last line without a newline still has to fit
+        try (MappedLineReader reader = new MappedLineReader(write("much too long"), 8)) {
+            assertThrows(IOException.class, reader::readLine);
+        }
+    }
+
+    @Test
+    void reportsThePositionInTheFile() throws IOException {
+        Path file = write("ab\ncd\n");
+        try (MappedLineReader reader = new MappedLineReader(file, 4)) {
+            assertEquals(6, reader.size());
+            reader.readLine();
+            assertEquals(3, reader.position());
+            reader.readLine();
+            assertEquals(6, reader.position());
+            assertNull(reader.readLine());
+        }
+    }
+
+    private Path write(String contents) throws IOException {
+        Path file = Files.createTempFile(directory, "lines", ".jsonl");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> readAll(Path file, int windowSize) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (MappedLineReader reader = new MappedLineReader(file, windowSize)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
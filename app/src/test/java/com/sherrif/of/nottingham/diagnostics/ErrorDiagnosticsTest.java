@@ -0,0 +1,60 @@
+package com.sherrif.of.nottingham.diagnostics;
+
+import io.opentelemetry.api.trace.Span;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErrorDiagnosticsTest {
+
+    private final Span span = Span.getInvalid();
+
+    @Test
+    void capturesTheFirstOccurrencesOfAFingerprintAndCountsTheRest() {
+        ErrorDiagnostics diagnostics = new ErrorDiagnostics(2, 50, Duration.ofHours(1), 100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i < 2, diagnostics.record(span, failure("order " + i)), "occurrence " + i);
+        }
+        assertEquals(2, diagnostics.captured());
+        assertEquals(3, diagnostics.counted());
+        assertEquals(1, diagnostics.fingerprints());
+    }
+
+    @Test
+    void stopsCapturingOnceTheGlobalBudgetIsUsedUp() {
+        ErrorDiagnostics diagnostics = new ErrorDiagnostics(2, 3, Duration.ofHours(1), 100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i < 3, diagnostics.record(span, "reason " + i), "reason " + i);
+        }
+        // reason 0 has a capture of its own left, but the global budget is used up
+        assertFalse(diagnostics.record(span, "reason 0"));
+        assertEquals(3, diagnostics.captured());
+        assertEquals(3, diagnostics.counted());
+        assertEquals(5, diagnostics.fingerprints());
+    }
+
+    @Test
+    void capturesAgainInTheNextWindow() throws InterruptedException {
+        ErrorDiagnostics diagnostics = new ErrorDiagnostics(1, 1, Duration.ofMillis(50), 100);
+        // until the window's one capture is used up, whichever window the first record landed in
+        while (diagnostics.record(span, "timeout")) {
+        }
+        Thread.sleep(120);
+        assertTrue(diagnostics.record(span, "timeout"));
+    }
+
+    @Test
+    void fingerprintsIgnoreTheMessageButNotTheCause() {
+        assertEquals(ErrorDiagnostics.fingerprint(failure("GME")), ErrorDiagnostics.fingerprint(failure("AMC")));
+        Exception plain = failure("GME");
+        Exception caused = new IllegalStateException("GME", new ArithmeticException());
+        caused.setStackTrace(plain.getStackTrace());
+        assertNotEquals(ErrorDiagnostics.fingerprint(plain), ErrorDiagnostics.fingerprint(caused));
+    }
+
+    private static Exception failure(String message) {
+        return new IllegalStateException(message);
+    }
+}
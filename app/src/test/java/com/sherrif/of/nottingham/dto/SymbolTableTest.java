@@ -0,0 +1,57 @@
+package com.sherrif.of.nottingham.dto;
+
+import io.opentelemetry.api.common.AttributeKey;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+    @Test
+    void internsDenselyUpToItsCapacity() {
+        SymbolTable table = new SymbolTable("tags.stock", "stock", 2);
+        Symbol gme = table.intern("GME");
+        assertSame(gme, table.intern("GME"));
+        assertEquals(0, gme.getId());
+        assertEquals(1, table.intern("AMC").getId());
+
+        Symbol full = table.intern("TSLA");
+        assertFalse(full.isInterned());
+        assertEquals("TSLA", full.getName());
+        assertEquals(2, table.size());
+        assertNull(table.intern(null));
+    }
+
+    @Test
+    void looksUpWithoutInterning() {
+        SymbolTable table = new SymbolTable("tags.stock", "stock", 2);
+        Symbol unknown = table.lookup("GME");
+        assertFalse(unknown.isInterned());
+        assertEquals("GME", unknown.getName());
+        assertNull(table.find("GME"));
+        assertEquals(0, table.size());
+        // built on first use, then kept
+        assertEquals("GME", unknown.getAttributes().get(AttributeKey.stringKey("tags.stock")));
+        assertSame(unknown.getAttributes(), unknown.getAttributes());
+        assertSame(unknown.getLabels(), unknown.getLabels());
+
+        Symbol gme = table.intern("GME");
+        assertSame(gme, table.lookup("GME"));
+        assertSame(gme, table.find("GME"));
+        assertNull(table.lookup(null));
+        assertNull(table.find(null));
+    }
+
+    @Test
+    void ordersInternOnlyOnceAccepted() {
+        EquityOrder order = new EquityOrder();
+        order.setTicker("NEVER-INTERNED-" + System.nanoTime());
+        assertFalse(order.tickerSymbol().isInterned());
+        assertNull(SymbolTable.TICKERS.find(order.getTicker()));
+
+        order.internSymbols();
+        assertTrue(order.tickerSymbol().isInterned());
+        assertSame(order.tickerSymbol(), SymbolTable.TICKERS.find(order.getTicker()));
+        assertNull(order.regionSymbol());
+    }
+}
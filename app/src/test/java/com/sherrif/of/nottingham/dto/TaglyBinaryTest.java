@@ -0,0 +1,179 @@
+package com.sherrif.of.nottingham.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaglyBinaryTest {
+
+    // declared types for supports and canEncode
+    List<EquityOrder> orderList;
+    List<String> stringList;
+    ArrayList<EquityOrder> orderArrayList;
+
+    @Test
+    void roundTripsAMatchedOrder() {
+        EquityOrder order = order();
+        order.setSide("sell");
+        order.setErrorFlag(true);
+        order.setFills(Arrays.asList(new Fill(17, 225.25, 60), new Fill(18, 225.5, 30)));
+        order.setFilledUnits(90);
+        order.setRemainingUnits(10);
+
+        byte[] bytes = TaglyBinary.encode(order);
+        assertEquals(EquityOrderCodec.encodedSize(order), bytes.length);
+        EquityOrder decoded = (EquityOrder) TaglyBinary.decode(ByteBuffer.wrap(bytes), EquityOrder.class);
+        assertEquals(order.getOrderId(), decoded.getOrderId());
+        assertEquals(order.getTimestamp(), decoded.getTimestamp());
+        assertEquals(order.getPrice(), decoded.getPrice());
+        assertEquals(order.getUnits(), decoded.getUnits());
+        assertEquals("SELL", decoded.getSide());
+        assertTrue(decoded.isErrorFlag());
+        assertEquals("GME", decoded.getTicker());
+        assertEquals("us-east", decoded.getRegion());
+        assertEquals(90, decoded.getFilledUnits());
+        assertEquals(10, decoded.getRemainingUnits());
+        assertEquals(2, decoded.getFills().size());
+        assertEquals(18, decoded.getFills().get(1).getRestingOrderId());
+        assertEquals(225.5, decoded.getFills().get(1).getPrice());
+        assertEquals(30, decoded.getFills().get(1).getUnits());
+        assertNull(decoded.getRejection());
+    }
+
+    @Test
+    void roundTripsNullsUnicodeAndRejections() {
+        EquityOrder order = order();
+        order.setRegion(null);
+        order.setSide(null);
+        order.setTicker("\u00dcn\u00efcode-\u20ac-\ud83d\ude80");
+        order.setRejection("Order needs a ticker");
+
+        EquityOrder decoded = (EquityOrder) TaglyBinary.decode(ByteBuffer.wrap(TaglyBinary.encode(order)), EquityOrder.class);
+        assertNull(decoded.getRegion());
+        // an absent side stays absent, rather than turning into either side
+        assertNull(decoded.getSide());
+        assertNull(decoded.getFills());
+        assertEquals(order.getTicker(), decoded.getTicker());
+        assertEquals("Order needs a ticker", decoded.getRejection());
+    }
+
+    @Test
+    void rejectsAnInvalidSide() {
+        EquityOrder order = order();
+        order.setSide("buy");
+        assertEquals("BUY", ((EquityOrder) TaglyBinary.decode(ByteBuffer.wrap(TaglyBinary.encode(order)), EquityOrder.class)).getSide());
+        order.setSide("HOLD");
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.encode(order));
+
+        // the flags byte follows orderId, timestamp, price and units
+        byte[] bytes = TaglyBinary.encode(order());
+        bytes[28] |= 2;
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.decode(ByteBuffer.wrap(bytes), EquityOrder.class));
+    }
+
+    @Test
+    void roundTripsAQuote() {
+        StockQuote quote = new StockQuote("GME", 225.5, 1_614_000_000_000L);
+        byte[] bytes = TaglyBinary.encode(quote);
+        assertEquals(StockQuoteCodec.encodedSize(quote), bytes.length);
+        StockQuote decoded = (StockQuote) TaglyBinary.decode(ByteBuffer.wrap(bytes), StockQuote.class);
+        assertEquals("GME", decoded.getTicker());
+        assertEquals(225.5, decoded.getPrice());
+        assertEquals(1_614_000_000_000L, decoded.getTimestampInMillis());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void roundTripsAnOrderList() throws Exception {
+        EquityOrder second = order();
+        second.setOrderId(2);
+        List<EquityOrder> orders = Arrays.asList(order(), second);
+        Type type = field("orderList");
+
+        List<EquityOrder> decoded = (List<EquityOrder>) TaglyBinary.decode(ByteBuffer.wrap(TaglyBinary.encode(orders)), type);
+        assertEquals(2, decoded.size());
+        assertEquals(1, decoded.get(0).getOrderId());
+        assertEquals(2, decoded.get(1).getOrderId());
+        assertTrue(((List<?>) TaglyBinary.decode(ByteBuffer.wrap(TaglyBinary.encode(Collections.emptyList())), type)).isEmpty());
+    }
+
+    @Test
+    void encodesOnlyListsDeclaredAsOrders() throws Exception {
+        assertTrue(TaglyBinary.canEncode(EquityOrder.class));
+        assertTrue(TaglyBinary.canEncode(StockQuote.class));
+        assertTrue(TaglyBinary.canEncode(field("orderList")));
+        assertFalse(TaglyBinary.canEncode(field("stringList")));
+        assertFalse(TaglyBinary.canEncode(field("orderArrayList")));
+        assertFalse(TaglyBinary.canEncode(List.class));
+        assertFalse(TaglyBinary.canEncode(ArrayList.class));
+        assertFalse(TaglyBinary.canEncode(String.class));
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.encode(Collections.singletonList("GME")));
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.encode("GME"));
+    }
+
+    @Test
+    void rejectsEveryTruncation() throws Exception {
+        EquityOrder order = order();
+        order.setFills(Collections.singletonList(new Fill(17, 225.25, 60)));
+        order.setRejection("none");
+        assertEveryPrefixRejected(TaglyBinary.encode(order), EquityOrder.class);
+        assertEveryPrefixRejected(TaglyBinary.encode(new StockQuote("GME", 225.5, 1)), StockQuote.class);
+        assertEveryPrefixRejected(TaglyBinary.encode(Arrays.asList(order(), order())), field("orderList"));
+    }
+
+    @Test
+    void rejectsOversizedCountsAndStrings() throws Exception {
+        byte[] bytes = TaglyBinary.encode(order());
+        // the fill count is the last int of an order without fills
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 4, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.decode(ByteBuffer.wrap(bytes), EquityOrder.class));
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 4, -1);
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.decode(ByteBuffer.wrap(bytes), EquityOrder.class));
+
+        ByteBuffer list = ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.decode(list, field("orderList")));
+
+        // a quote's ticker length claiming more bytes than there are
+        byte[] quote = TaglyBinary.encode(new StockQuote("GME", 225.5, 1));
+        ByteBuffer.wrap(quote).putShort(0, Short.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.decode(ByteBuffer.wrap(quote), StockQuote.class));
+
+        char[] longTicker = new char[Short.MAX_VALUE + 1];
+        Arrays.fill(longTicker, 'G');
+        EquityOrder order = order();
+        order.setRegion(new String(longTicker));
+        assertThrows(IllegalArgumentException.class, () -> TaglyBinary.encode(order));
+    }
+
+    private static void assertEveryPrefixRejected(byte[] bytes, Type type) {
+        for (int length = 0; length < bytes.length; length++) {
+            ByteBuffer prefix = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+            int truncatedAt = length;
+            assertThrows(IllegalArgumentException.class, () -> TaglyBinary.decode(prefix, type),
+                    "decoded " + truncatedAt + " of " + bytes.length + " bytes");
+        }
+    }
+
+    private static Type field(String name) throws NoSuchFieldException {
+        return TaglyBinaryTest.class.getDeclaredField(name).getGenericType();
+    }
+
+    private static EquityOrder order() {
+        EquityOrder order = new EquityOrder();
+        order.setOrderId(1);
+        order.setTimestamp(1_614_000_000_000L);
+        order.setTicker("GME");
+        order.setRegion("us-east");
+        order.setSide("BUY");
+        order.setPrice(225.5);
+        order.setUnits(100);
+        return order;
+    }
+}
@@ -0,0 +1,85 @@
+package com.sherrif.of.nottingham.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    @Test
+    void countsExactlyWhileUnderCapacity() {
+        HeavyHitters heavyHitters = new HeavyHitters(4);
+        heavyHitters.add("GME", 5);
+        heavyHitters.add("AMC", 2);
+        heavyHitters.add("GME", 1);
+        heavyHitters.add("TSLA", 3);
+
+        Map<String, Long> top = heavyHitters.top(10);
+        assertEquals(Arrays.asList("GME", "TSLA", "AMC"), new ArrayList<>(top.keySet()));
+        assertEquals(6, (long) top.get("GME"));
+        assertEquals(3, (long) top.get("TSLA"));
+        assertEquals(2, (long) top.get("AMC"));
+        assertEquals(11, heavyHitters.total());
+        assertEquals(1, heavyHitters.top(1).size());
+    }
+
+    @Test
+    void ignoresNonPositiveCounts() {
+        HeavyHitters heavyHitters = new HeavyHitters(2);
+        heavyHitters.add("GME", 0);
+        heavyHitters.add("GME", -3);
+        assertTrue(heavyHitters.top(2).isEmpty());
+        assertEquals(0, heavyHitters.total());
+    }
+
+    @Test
+    void newKeyTakesOverTheSmallestCountWhenFull() {
+        HeavyHitters heavyHitters = new HeavyHitters(2);
+        heavyHitters.add("GME", 10);
+        heavyHitters.add("AMC", 3);
+        heavyHitters.add("TSLA", 1);
+
+        Map<String, Long> top = heavyHitters.top(2);
+        assertFalse(top.containsKey("AMC"));
+        // inherits AMC's 3 as its overestimate
+        assertEquals(4, (long) top.get("TSLA"));
+        assertEquals(10, (long) top.get("GME"));
+        assertEquals(14, heavyHitters.total());
+    }
+
+    @Test
+    void keepsEveryKeyAboveTheGuaranteedThresholdAndNeverUnderestimates() {
+        int capacity = 20;
+        HeavyHitters heavyHitters = new HeavyHitters(capacity);
+        Random random = new Random(7);
+        long[] trueCounts = new long[1000];
+        for (int i = 0; i < 200_000; i++) {
+            // a few heavy keys over a uniform long tail
+            int key = random.nextInt(4) == 0 ? random.nextInt(5) : 5 + random.nextInt(trueCounts.length - 5);
+            trueCounts[key]++;
+            heavyHitters.add("k" + key, 1);
+        }
+        Map<String, Long> top = heavyHitters.top(capacity);
+        assertEquals(200_000, heavyHitters.total());
+        for (int key = 0; key < trueCounts.length; key++) {
+            Long estimate = top.get("k" + key);
+            if (trueCounts[key] > heavyHitters.total() / capacity) {
+                assertNotNull(estimate, "k" + key + " with " + trueCounts[key] + " is missing");
+            }
+            if (estimate != null) {
+                assertTrue(estimate >= trueCounts[key], "k" + key + " underestimated");
+                assertTrue(estimate - trueCounts[key] <= heavyHitters.total() / capacity, "k" + key + " overestimated");
+            }
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(0));
+    }
+}
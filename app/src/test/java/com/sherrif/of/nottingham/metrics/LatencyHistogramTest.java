@@ -0,0 +1,96 @@
+package com.sherrif.of.nottingham.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesGetExactBuckets() {
+        for (long micros = 0; micros < 64; micros++) {
+            int index = LatencyHistogram.indexOf(micros);
+            assertEquals(micros, index);
+            assertEquals(micros, LatencyHistogram.lowestValueAt(index));
+            assertEquals(micros, LatencyHistogram.highestValueAt(index));
+        }
+    }
+
+    @Test
+    void bucketsTileTheRangeWithoutGapsOrOverlap() {
+        assertEquals(0, LatencyHistogram.lowestValueAt(0));
+        for (int index = 1; index < LatencyHistogram.BUCKETS; index++) {
+            assertEquals(LatencyHistogram.highestValueAt(index - 1) + 1, LatencyHistogram.lowestValueAt(index),
+                    "bucket " + index);
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE_MICROS, LatencyHistogram.highestValueAt(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    void everyValueFallsInsideItsBucketWithinThePrecision() {
+        for (long micros = 1; micros <= LatencyHistogram.MAX_VALUE_MICROS; micros = micros * 3 / 2 + 1) {
+            int index = LatencyHistogram.indexOf(micros);
+            long lowest = LatencyHistogram.lowestValueAt(index);
+            long highest = LatencyHistogram.highestValueAt(index);
+            assertTrue(lowest <= micros && micros <= highest, micros + " outside [" + lowest + ", " + highest + "]");
+            assertTrue(highest - lowest <= Math.max(1, lowest / 32), "bucket of " + micros + " is too wide");
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE_MICROS));
+    }
+
+    @Test
+    void quantilesComeFromTheIntervalSinceTheLastSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100; micros++) {
+            histogram.recordMicros(micros);
+        }
+        LatencyHistogram.Snapshot first = histogram.intervalSnapshot();
+        assertEquals(100, first.getCount());
+        assertEquals(50, first.valueAtQuantile(0.5));
+        assertTrue(Math.abs(first.valueAtQuantile(0.99) - 99) <= 2);
+        assertEquals(100, first.getMax(), 2);
+
+        histogram.recordMicros(5000);
+        LatencyHistogram.Snapshot second = histogram.intervalSnapshot();
+        assertEquals(1, second.getCount());
+        assertTrue(Math.abs(second.getMax() - 5000) <= 5000 / 32);
+
+        LatencyHistogram.Snapshot empty = histogram.intervalSnapshot();
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getMax());
+    }
+
+    @Test
+    void clampsNegativeAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(-5);
+        histogram.recordMicros(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.intervalSnapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.valueAtQuantile(0.5));
+        assertEquals(LatencyHistogram.MAX_VALUE_MICROS, snapshot.getMax());
+    }
+
+    @Test
+    void foldsTheCountsOfTerminatedThreadsAndDropsThem() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    histogram.recordMicros(100);
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        assertEquals(8, histogram.recordingThreads());
+        LatencyHistogram.Snapshot snapshot = histogram.intervalSnapshot();
+        assertEquals(80, snapshot.getCount());
+        assertEquals(0, histogram.recordingThreads());
+
+        // the folded counts are not reported a second time
+        histogram.recordMicros(100);
+        assertEquals(1, histogram.intervalSnapshot().getCount());
+        assertEquals(1, histogram.recordingThreads());
+    }
+}
@@ -0,0 +1,73 @@
+package com.sherrif.of.nottingham.services.order;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AhoCorasickMatcherTest {
+
+    private static AhoCorasickMatcher matcher(String... aliasAndCanonical) {
+        Map<String, String> aliases = new HashMap<>();
+        for (int i = 0; i < aliasAndCanonical.length; i += 2) {
+            aliases.put(aliasAndCanonical[i], aliasAndCanonical[i + 1]);
+        }
+        return new AhoCorasickMatcher(aliases);
+    }
+
+    @Test
+    void matchesCaseInsensitivelyInOrderOfFirstOccurrence() {
+        AhoCorasickMatcher matcher = matcher("GameStop", "GME", "AMC Entertainment", "AMC", "Tesla", "TSLA");
+        assertEquals(Arrays.asList("TSLA", "GME"), matcher.match("tesla beats GAMESTOP, then gamestop again"));
+        assertEquals(3, matcher.size());
+    }
+
+    @Test
+    void matchesOnlyOnWordBoundaries() {
+        AhoCorasickMatcher matcher = matcher("amc", "AMC");
+        assertEquals(Collections.emptyList(), matcher.match("camcorder"));
+        assertEquals(Collections.emptyList(), matcher.match("amc2"));
+        assertEquals(Collections.singletonList("AMC"), matcher.match("amc"));
+        assertEquals(Collections.singletonList("AMC"), matcher.match("(AMC)!"));
+    }
+
+    @Test
+    void reportsAliasesThatAreSuffixesOfOtherAliases() {
+        // "stop" only becomes reachable through the failure and output links of "gamestop"
+        AhoCorasickMatcher matcher = matcher("gamestop corp", "GME", "stop", "STOP", "corp", "CORP");
+        assertEquals(Arrays.asList("GME", "CORP"), matcher.match("gamestop corp"));
+        assertEquals(Arrays.asList("STOP", "CORP"), matcher.match("game stop corp"));
+    }
+
+    @Test
+    void followsFailureLinksAcrossPartialMatches() {
+        AhoCorasickMatcher matcher = matcher("he", "HE", "she", "SHE", "his", "HIS", "hers", "HERS");
+        assertEquals(Arrays.asList("SHE", "HIS", "HERS"), matcher.match("she his hers ushers"));
+    }
+
+    @Test
+    void findsNothingWithoutAliases() {
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(Collections.emptyMap());
+        assertEquals(Collections.emptyList(), matcher.match("GameStop"));
+        assertEquals(0, matcher.size());
+    }
+
+    @Test
+    void parsesCanonicalNamesAliasesAndComments() throws Exception {
+        String gazetteer = "# comment\n\nGME | GameStop | GameStop Corp\n  TSLA|Tesla|  \n";
+        Map<String, String> aliases = Gazetteer.parse(new ByteArrayInputStream(gazetteer.getBytes(StandardCharsets.UTF_8)));
+        Map<String, String> expected = new HashMap<>();
+        expected.put("GME", "GME");
+        expected.put("GameStop", "GME");
+        expected.put("GameStop Corp", "GME");
+        expected.put("TSLA", "TSLA");
+        expected.put("Tesla", "TSLA");
+        assertEquals(expected, aliases);
+    }
+}
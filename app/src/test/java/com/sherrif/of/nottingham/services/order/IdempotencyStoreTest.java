@@ -0,0 +1,126 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private final AtomicInteger placements = new AtomicInteger();
+
+    @Test
+    void answersARetryWithTheOriginalResponse() {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofMinutes(1));
+        EquityOrder order = order();
+        ResponseEntity<EquityOrder> placed = ResponseEntity.ok(order);
+
+        assertSame(placed, store.execute("k1", order, () -> place(placed)).join());
+        assertSame(placed, store.execute("k1", order(), () -> place(placed)).join());
+        assertEquals(1, placements.get());
+        assertEquals(1, store.misses());
+        assertEquals(1, store.hits());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void aRetryInFlightWaitsOnTheFirstAttempt() {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofMinutes(1));
+        CompletableFuture<ResponseEntity<EquityOrder>> pending = new CompletableFuture<>();
+
+        CompletableFuture<ResponseEntity<EquityOrder>> first = store.execute("k1", order(), () -> place(pending));
+        CompletableFuture<ResponseEntity<EquityOrder>> retry = store.execute("k1", order(), () -> place(pending));
+        assertFalse(retry.isDone());
+        ResponseEntity<EquityOrder> placed = ResponseEntity.ok(order());
+        pending.complete(placed);
+
+        assertSame(placed, first.join());
+        assertSame(placed, retry.join());
+        assertEquals(1, placements.get());
+        assertEquals(1, store.coalescedWaiters());
+    }
+
+    @Test
+    void forgetsAFailedResponseSoARetryPlacesAgain() {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofMinutes(1));
+        ResponseEntity<EquityOrder> rejected = ResponseEntity.badRequest().build();
+
+        assertEquals(HttpStatus.BAD_REQUEST, store.execute("k1", order(), () -> place(rejected)).join().getStatusCode());
+        assertEquals(0, store.size());
+        ResponseEntity<EquityOrder> placed = ResponseEntity.ok(order());
+        assertSame(placed, store.execute("k1", order(), () -> place(placed)).join());
+        assertEquals(2, placements.get());
+    }
+
+    @Test
+    void forgetsAnExceptionalAttemptSoARetryPlacesAgain() {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofMinutes(1));
+
+        CompletableFuture<ResponseEntity<EquityOrder>> failed = store.execute("k1", order(),
+                () -> place(CompletableFuture.failedFuture(new IllegalStateException("down"))));
+        assertThrows(CompletionException.class, failed::join);
+        CompletableFuture<ResponseEntity<EquityOrder>> thrown = store.execute("k2", order(), () -> {
+            throw new IllegalStateException("down");
+        });
+        assertThrows(CompletionException.class, thrown::join);
+        assertEquals(0, store.size());
+
+        ResponseEntity<EquityOrder> placed = ResponseEntity.ok(order());
+        assertSame(placed, store.execute("k1", order(), () -> place(placed)).join());
+        assertEquals(2, placements.get());
+    }
+
+    @Test
+    void rejectsAKeyReusedForADifferentOrder() {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofMinutes(1));
+        ResponseEntity<EquityOrder> placed = ResponseEntity.ok(order());
+        store.execute("k1", order(), () -> place(placed)).join();
+
+        EquityOrder different = order();
+        different.setUnits(11);
+        ResponseEntity<EquityOrder> response = store.execute("k1", different, () -> place(placed)).join();
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        assertEquals(1, placements.get());
+        assertEquals(1, store.conflicts());
+        // the original order still gets its response
+        assertSame(placed, store.execute("k1", order(), () -> place(placed)).join());
+    }
+
+    @Test
+    void forgetsKeysOnceTheWindowHasPassed() throws InterruptedException {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofMillis(50));
+        ResponseEntity<EquityOrder> placed = ResponseEntity.ok(order());
+        store.execute("k1", order(), () -> place(placed)).join();
+
+        Thread.sleep(60);
+        store.execute("k1", order(), () -> place(placed)).join();
+        assertEquals(2, placements.get());
+        assertEquals(2, store.misses());
+    }
+
+    private CompletableFuture<ResponseEntity<EquityOrder>> place(ResponseEntity<EquityOrder> response) {
+        return place(CompletableFuture.completedFuture(response));
+    }
+
+    private CompletableFuture<ResponseEntity<EquityOrder>> place(CompletableFuture<ResponseEntity<EquityOrder>> response) {
+        placements.incrementAndGet();
+        return response;
+    }
+
+    private static EquityOrder order() {
+        EquityOrder order = new EquityOrder();
+        order.setTicker("GME");
+        order.setRegion("us-east");
+        order.setSide(EquityOrder.BUY);
+        order.setPrice(225);
+        order.setUnits(10);
+        return order;
+    }
+}
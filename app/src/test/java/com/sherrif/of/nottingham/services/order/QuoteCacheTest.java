@@ -0,0 +1,122 @@
+package com.sherrif.of.nottingham.services.order;
+
+import com.sherrif.of.nottingham.dto.StockQuote;
+import com.sherrif.of.nottingham.dto.SymbolTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteCacheTest {
+
+    @Test
+    void servesCachedQuotesUntilTheyAreStale() throws Exception {
+        QuoteCache cache = new QuoteCache(50, "", 1000, 100);
+        AtomicInteger loads = new AtomicInteger();
+        StockQuote quote = new StockQuote("$GME", 225, 1);
+
+        assertSame(quote, cache.get("$GME", ticker -> load(loads, quote)).join());
+        assertSame(quote, cache.get("$GME", ticker -> load(loads, quote)).join());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.hits());
+
+        Thread.sleep(60);
+        cache.get("$GME", ticker -> load(loads, quote)).join();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void coalescesConcurrentMissesOntoOneLoad() {
+        QuoteCache cache = new QuoteCache(1000, "", 1000, 100);
+        CompletableFuture<StockQuote> pending = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<StockQuote> first = cache.get("$GME", ticker -> load(loads, pending));
+        CompletableFuture<StockQuote> second = cache.get("$GME", ticker -> load(loads, pending));
+        assertFalse(first.isDone());
+        StockQuote quote = new StockQuote("$GME", 225, 1);
+        pending.complete(quote);
+
+        assertSame(quote, first.join());
+        assertSame(quote, second.join());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.coalescedWaiters());
+    }
+
+    @Test
+    void cachesNotFoundForTheNegativeTtl() throws Exception {
+        QuoteCache cache = new QuoteCache(10_000, "", 50, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("$NOPE", ticker -> load(loads, (StockQuote) null)).join());
+        assertNull(cache.get("$NOPE", ticker -> load(loads, (StockQuote) null)).join());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.notFound());
+
+        Thread.sleep(60);
+        cache.get("$NOPE", ticker -> load(loads, (StockQuote) null)).join();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void doesNotCacheFailedLoads() {
+        QuoteCache cache = new QuoteCache(10_000, "", 10_000, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<StockQuote> failed = cache.get("$GME",
+                ticker -> load(loads, CompletableFuture.failedFuture(new IllegalStateException("down"))));
+        assertTrue(failed.isCompletedExceptionally());
+        StockQuote quote = new StockQuote("$GME", 225, 1);
+        assertSame(quote, cache.get("$GME", ticker -> load(loads, quote)).join());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void servesWithoutCachingWhileFullAndSweepsOncePerTtl() throws Exception {
+        QuoteCache cache = new QuoteCache(10_000, "", 50, 2);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("$A", ticker -> load(loads, (StockQuote) null)).join();
+        cache.get("$B", ticker -> load(loads, (StockQuote) null)).join();
+
+        // full of entries that have not expired, so nothing is swept and the new ticker is not cached
+        cache.get("$C", ticker -> load(loads, (StockQuote) null)).join();
+        cache.get("$C", ticker -> load(loads, (StockQuote) null)).join();
+        assertEquals(4, loads.get());
+
+        Thread.sleep(60);
+        cache.get("$C", ticker -> load(loads, (StockQuote) null)).join();
+        cache.get("$C", ticker -> load(loads, (StockQuote) null)).join();
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    void internsOnlyQuotedTickers() {
+        QuoteCache cache = new QuoteCache(10_000, "", 10_000, 100);
+        AtomicInteger loads = new AtomicInteger();
+        String unknown = "$MADE-UP-" + System.nanoTime();
+        String quoted = "$QUOTED-" + System.nanoTime();
+
+        assertNull(cache.get(unknown, ticker -> load(loads, (StockQuote) null)).join());
+        assertNull(SymbolTable.TICKERS.find(unknown));
+        cache.get(quoted, ticker -> load(loads, new StockQuote(quoted, 225, 1))).join();
+        assertTrue(SymbolTable.TICKERS.find(quoted).isInterned());
+    }
+
+    @Test
+    void parsesPerTickerTtls() {
+        assertEquals(2, QuoteCache.parseTickerTtls("$GME:100, $AMC:2000").size());
+        assertTrue(QuoteCache.parseTickerTtls(" ").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> QuoteCache.parseTickerTtls("$GME"));
+    }
+
+    private static CompletableFuture<StockQuote> load(AtomicInteger loads, StockQuote quote) {
+        return load(loads, CompletableFuture.completedFuture(quote));
+    }
+
+    private static CompletableFuture<StockQuote> load(AtomicInteger loads, CompletableFuture<StockQuote> quote) {
+        loads.incrementAndGet();
+        return quote;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookTest {
+
+    private final OrderBook book = new OrderBook("GME");
+    private final OrderBook.Fills fills = new OrderBook.Fills();
+
+    @Test
+    void restsAnOrderThatDoesNotCross() {
+        assertEquals(10, book.match(1, true, ticks(99), 10, fills));
+        assertEquals(5, book.match(2, false, ticks(101), 5, fills));
+        assertEquals(0, fills.count());
+        assertEquals(ticks(99), book.bestBid());
+        assertEquals(ticks(101), book.bestAsk());
+        assertEquals(2, book.priceLevels());
+    }
+
+    @Test
+    void fillsTheBestPriceFirstAndThenByArrival() {
+        book.match(1, false, ticks(101), 10, fills);
+        book.match(2, false, ticks(100), 10, fills);
+        book.match(3, false, ticks(100), 10, fills);
+
+        assertEquals(0, book.match(4, true, ticks(101), 25, fills));
+        assertEquals(3, fills.count());
+        assertFill(0, 2, ticks(100), 10);
+        assertFill(1, 3, ticks(100), 10);
+        // the resting order's price, not the incoming limit
+        assertFill(2, 1, ticks(101), 5);
+        assertEquals(ticks(101), book.bestAsk());
+        assertEquals(1, book.priceLevels());
+    }
+
+    @Test
+    void partiallyFillsAndRestsTheRemainder() {
+        book.match(1, true, ticks(100), 4, fills);
+        assertEquals(6, book.match(2, false, ticks(99), 10, fills));
+        assertEquals(1, fills.count());
+        assertFill(0, 1, ticks(100), 4);
+        assertEquals(OrderBook.MARKET_SELL, book.bestBid());
+        assertEquals(ticks(99), book.bestAsk());
+
+        // a partially filled resting order keeps its place at the head of the level
+        book.match(3, false, ticks(99), 10, fills);
+        book.match(4, true, ticks(99), 8, fills);
+        assertFill(0, 2, ticks(99), 6);
+        assertFill(1, 3, ticks(99), 2);
+        book.match(5, true, ticks(99), 1, fills);
+        assertFill(0, 3, ticks(99), 1);
+    }
+
+    @Test
+    void marketOrdersNeverRest() {
+        book.match(1, false, ticks(100), 5, fills);
+        assertEquals(5, book.match(2, true, OrderBook.MARKET_BUY, 10, fills));
+        assertFill(0, 1, ticks(100), 5);
+        assertEquals(0, book.priceLevels());
+        assertEquals(3, book.match(3, false, OrderBook.MARKET_SELL, 3, fills));
+        assertEquals(0, fills.count());
+        assertEquals(0, book.priceLevels());
+    }
+
+    @Test
+    void reusesEmptiedLevelsAtNewPrices() {
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                book.match(round * 100 + i, false, ticks(100 + i), 1, fills);
+            }
+            assertEquals(50, book.priceLevels());
+            assertEquals(0, book.match(round * 100 + 99, true, OrderBook.MARKET_BUY, 50, fills));
+            assertEquals(50, fills.count());
+            for (int i = 0; i < 50; i++) {
+                assertFill(i, round * 100 + i, ticks(100 + i), 1);
+            }
+            assertEquals(0, book.priceLevels());
+            assertEquals(OrderBook.MARKET_BUY, book.bestAsk());
+        }
+    }
+
+    @Test
+    void keepsArrivalOrderWhenALevelGrowsAfterWrapping() {
+        // move the head of the level's ring forward, then grow it past its initial capacity
+        for (int i = 0; i < 6; i++) {
+            book.match(i, true, ticks(100), 1, fills);
+        }
+        book.match(100, false, ticks(100), 5, fills);
+        for (int i = 6; i < 30; i++) {
+            book.match(i, true, ticks(100), 1, fills);
+        }
+        assertEquals(0, book.match(101, false, ticks(100), 25, fills));
+        assertEquals(25, fills.count());
+        for (int i = 0; i < 25; i++) {
+            assertFill(i, 5 + i, ticks(100), 1);
+        }
+    }
+
+    private void assertFill(int i, long restingOrderId, long priceTicks, int units) {
+        assertEquals(restingOrderId, fills.restingOrderId(i), "resting order of fill " + i);
+        assertEquals(priceTicks, fills.priceTicks(i), "price of fill " + i);
+        assertEquals(units, fills.units(i), "units of fill " + i);
+    }
+
+    private static long ticks(double price) {
+        return OrderBook.toTicks(price);
+    }
+}
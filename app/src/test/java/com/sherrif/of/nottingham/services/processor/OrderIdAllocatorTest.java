@@ -0,0 +1,78 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderIdAllocatorTest {
+
+    @Test
+    void packsTimestampAndNode() {
+        long before = System.currentTimeMillis();
+        long id = new OrderIdAllocator(513, 1000).nextId();
+        long after = System.currentTimeMillis();
+        assertTrue(id > 0);
+        assertEquals(513, OrderIdAllocator.nodeOf(id));
+        assertTrue(OrderIdAllocator.timestampOf(id) >= before && OrderIdAllocator.timestampOf(id) <= after);
+    }
+
+    @Test
+    void issuesIncreasingIdsPastAFullSequence() {
+        OrderIdAllocator allocator = new OrderIdAllocator(1, 1000);
+        long previous = allocator.nextId();
+        // more than one millisecond's sequence, so some IDs carry into the next millisecond
+        for (int i = 0; i < 20_000; i++) {
+            long id = allocator.nextId();
+            assertTrue(id > previous);
+            assertEquals(1, OrderIdAllocator.nodeOf(id));
+            previous = id;
+        }
+    }
+
+    @Test
+    void issuesUniqueIdsAcrossThreads() throws InterruptedException {
+        OrderIdAllocator allocator = new OrderIdAllocator(7, 1000);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 4;
+        int perThread = 10_000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(allocator.nextId());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    void advancesPastAReplayedId() {
+        OrderIdAllocator previousRun = new OrderIdAllocator(3, 10_000);
+        long replayed = 0;
+        // run ahead of the wall clock, as a node that issued a burst before restarting would have
+        for (int i = 0; i < 4096 * 200; i++) {
+            replayed = previousRun.nextId();
+        }
+        assertTrue(OrderIdAllocator.timestampOf(replayed) > System.currentTimeMillis());
+
+        OrderIdAllocator restarted = new OrderIdAllocator(3, 10_000);
+        restarted.advancePast(replayed);
+        assertTrue(restarted.nextId() > replayed);
+        // an older ID never moves it back
+        restarted.advancePast(0);
+        assertTrue(restarted.nextId() > replayed);
+    }
+
+    @Test
+    void rejectsNodesOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderIdAllocator(-1, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new OrderIdAllocator(OrderIdAllocator.MAX_NODE_ID + 1, 1000));
+    }
+}
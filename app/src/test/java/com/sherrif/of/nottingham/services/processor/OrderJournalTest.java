@@ -0,0 +1,199 @@
+package com.sherrif.of.nottingham.services.processor;
+
+import com.sherrif.of.nottingham.dto.EquityOrder;
+import com.sherrif.of.nottingham.dto.Fill;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderJournalTest {
+
+    // 8 byte header and 48 bytes of a GME order without a region or fills
+    private static final int RECORD_BYTES = 56;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rollsSegmentsAndReplaysEveryOrderInOrder() throws IOException {
+        OrderJournal journal = new OrderJournal(directory, 3 * RECORD_BYTES + 10, OrderJournal.Durability.PER_REQUEST, 0);
+        assertEquals(0, journal.open(order -> fail("empty journal replayed " + order.getOrderId())));
+        for (int i = 0; i < 10; i++) {
+            journal.append(order(i)).join();
+        }
+        journal.shutdown();
+        assertEquals(4, segments().size());
+
+        List<Long> replayed = new ArrayList<>();
+        OrderJournal reopened = new OrderJournal(directory, 3 * RECORD_BYTES + 10, OrderJournal.Durability.PER_REQUEST, 0);
+        assertEquals(10, reopened.open(order -> replayed.add(order.getOrderId())));
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), replayed);
+        // appending resumes in the last segment
+        reopened.append(order(10)).join();
+        reopened.shutdown();
+        assertEquals(4, segments().size());
+        assertEquals(11, replay(OrderJournal.Durability.PER_REQUEST).size());
+    }
+
+    @Test
+    void rejectsARecordLargerThanASegment() throws IOException {
+        OrderJournal journal = new OrderJournal(directory, RECORD_BYTES - 1, OrderJournal.Durability.PER_REQUEST, 0);
+        journal.open(order -> {
+        });
+        assertThrows(IllegalArgumentException.class, () -> journal.append(order(1)));
+        journal.shutdown();
+    }
+
+    @Test
+    void truncatesATornTailAndAppendsAfterTheLastIntactRecord() throws IOException {
+        OrderJournal journal = new OrderJournal(directory, 4096, OrderJournal.Durability.GROUPED, 0);
+        journal.open(order -> {
+        });
+        CompletableFuture<?>[] durable = new CompletableFuture<?>[5];
+        for (int i = 0; i < durable.length; i++) {
+            durable[i] = journal.append(order(i));
+        }
+        CompletableFuture.allOf(durable).join();
+        journal.shutdown();
+
+        // a crash in the middle of the last record: its payload no longer matches the checksum
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF}), 4 * RECORD_BYTES + 8 + 20);
+        }
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), replay(OrderJournal.Durability.GROUPED));
+
+        OrderJournal reopened = new OrderJournal(directory, 4096, OrderJournal.Durability.GROUPED, 0);
+        reopened.open(order -> {
+        });
+        reopened.append(order(100)).join();
+        reopened.shutdown();
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 100L), replay(OrderJournal.Durability.GROUPED));
+    }
+
+    @Test
+    void ignoresAnInvalidRecordLength() throws IOException {
+        OrderJournal journal = new OrderJournal(directory, 4096, OrderJournal.Durability.PER_REQUEST, 0);
+        journal.open(order -> {
+        });
+        journal.append(order(1)).join();
+        journal.append(order(2)).join();
+        journal.shutdown();
+
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1 << 20), RECORD_BYTES);
+        }
+        assertEquals(Arrays.asList(1L), replay(OrderJournal.Durability.PER_REQUEST));
+    }
+
+    @Test
+    void writesNothingWhenOff() throws IOException {
+        OrderJournal journal = new OrderJournal(directory.resolve("off"), 4096, OrderJournal.Durability.OFF, 0);
+        assertEquals(0, journal.open(order -> fail("nothing to replay")));
+        assertTrue(journal.append(order(1)).isDone());
+        assertFalse(Files.exists(directory.resolve("off")));
+    }
+
+    @Test
+    void replayRebuildsTheSameBooks() throws IOException {
+        OrderJournal journal = new OrderJournal(directory, 64 * 1024, OrderJournal.Durability.GROUPED, 0);
+        journal.open(order -> {
+        });
+        MatchingEngine engine = new MatchingEngine(2, journal);
+        Random random = new Random(11);
+        List<EquityOrder> orders = new ArrayList<>();
+        List<CompletableFuture<EquityOrder>> matched = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            EquityOrder order = order(i);
+            order.setTicker("T" + random.nextInt(3));
+            order.setSide(random.nextBoolean() ? MatchingEngine.BUY : MatchingEngine.SELL);
+            // a few market orders among the limits
+            order.setPrice(random.nextInt(20) == 0 ? 0 : 100 + random.nextInt(11) - 5);
+            order.setUnits(1 + random.nextInt(50));
+            orders.add(order);
+            matched.add(engine.submit(order));
+        }
+        // sweep every book at the end, so its fills show everything left resting
+        for (int t = 0; t < 3; t++) {
+            for (String side : Arrays.asList(MatchingEngine.BUY, MatchingEngine.SELL)) {
+                EquityOrder sweep = order(orders.size());
+                sweep.setTicker("T" + t);
+                sweep.setSide(side);
+                sweep.setPrice(0);
+                sweep.setUnits(1_000_000);
+                orders.add(sweep);
+                matched.add(engine.submit(sweep));
+            }
+        }
+        CompletableFuture.allOf(matched.toArray(new CompletableFuture<?>[0])).join();
+        engine.shutdown();
+        journal.shutdown();
+        assertTrue(segments().size() > 1);
+
+        OrderJournal reopened = new OrderJournal(directory, 64 * 1024, OrderJournal.Durability.GROUPED, 0);
+        MatchingEngine rebuilt = new MatchingEngine(3, reopened);
+        // the journal interleaves the shards, but keeps every ticker's orders in matching order
+        Map<Long, EquityOrder> replayed = new HashMap<>();
+        reopened.open(order -> replayed.put(order.getOrderId(), rebuilt.replay(order)));
+        assertEquals(orders.size(), replayed.size());
+        for (int i = 0; i < orders.size(); i++) {
+            EquityOrder original = orders.get(i);
+            EquityOrder again = replayed.get(original.getOrderId());
+            assertEquals(original.getFilledUnits(), again.getFilledUnits(), "filled units of order " + i);
+            assertEquals(original.getRemainingUnits(), again.getRemainingUnits(), "remaining units of order " + i);
+            assertEquals(describe(original.getFills()), describe(again.getFills()), "fills of order " + i);
+        }
+        rebuilt.shutdown();
+        reopened.shutdown();
+    }
+
+    private List<Long> replay(OrderJournal.Durability durability) throws IOException {
+        List<Long> replayed = new ArrayList<>();
+        OrderJournal journal = new OrderJournal(directory, 4096, durability, 0);
+        journal.open(order -> replayed.add(order.getOrderId()));
+        journal.shutdown();
+        return replayed;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".journal")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String describe(List<Fill> fills) {
+        if (fills == null) {
+            return "[]";
+        }
+        return fills.stream()
+                .map(fill -> fill.getRestingOrderId() + "@" + fill.getPrice() + "x" + fill.getUnits())
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static EquityOrder order(long orderId) {
+        EquityOrder order = new EquityOrder();
+        order.setOrderId(orderId);
+        order.setTimestamp(1_000 + orderId);
+        order.setTicker("GME");
+        order.setPrice(225);
+        order.setUnits(10);
+        return order;
+    }
+}
@@ -0,0 +1,50 @@
+package com.sherrif.of.nottingham.services.subscription;
+
+import com.sherrif.of.nottingham.dto.StockQuote;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteBookTest {
+
+    @Test
+    void seedsAndNormalizesTickers() {
+        QuoteBook quoteBook = new QuoteBook("GME:225, amc:10.5");
+        assertEquals(2, quoteBook.size());
+        assertEquals(225, quoteBook.get("$gme").getPrice());
+        assertEquals("AMC", quoteBook.get("AMC").getTicker());
+        assertNull(quoteBook.get("TSLA"));
+        assertThrows(IllegalArgumentException.class, () -> new QuoteBook("GME"));
+    }
+
+    @Test
+    void publishesANewSnapshotAndIgnoresOlderUpdates() {
+        QuoteBook quoteBook = new QuoteBook("");
+        List<StockQuote> published = new ArrayList<>();
+        quoteBook.addListener(published::add);
+
+        StockQuote update = new StockQuote("$gme", 225, 2000);
+        StockQuote snapshot = quoteBook.publish(update);
+        assertNotSame(update, snapshot);
+        assertEquals("GME", snapshot.getTicker());
+
+        StockQuote current = quoteBook.publish(new StockQuote("GME", 100, 1000));
+        assertSame(snapshot, current);
+        assertEquals(225, quoteBook.get("GME").getPrice());
+        assertEquals(1, published.size());
+
+        quoteBook.publish(new StockQuote("GME", 230, 3000));
+        assertEquals(230, quoteBook.get("GME").getPrice());
+        assertEquals(2, published.size());
+    }
+
+    @Test
+    void stampsUpdatesWithoutATimestamp() {
+        QuoteBook quoteBook = new QuoteBook("");
+        long before = System.currentTimeMillis();
+        assertTrue(quoteBook.publish(new StockQuote("GME", 225, 0)).getTimestampInMillis() >= before);
+    }
+}
@@ -0,0 +1,40 @@
+package com.sherrif.of.nottingham.services.subscription;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteStreamsTest {
+
+    @Test
+    void acceptsOnlyQuotedTickersUpToTheLimit() {
+        QuoteStreams quoteStreams = new QuoteStreams(new QuoteBook("GME:225,AMC:10,TSLA:700"), 1, 1000, 1000, 10, 2);
+        try {
+            assertTrue(quoteStreams.accepts(Arrays.asList("$GME", "amc")));
+            // duplicates count once
+            assertTrue(quoteStreams.accepts(Arrays.asList("GME", "$gme", "AMC")));
+            assertFalse(quoteStreams.accepts(Arrays.asList("GME", "AMC", "TSLA")));
+            assertFalse(quoteStreams.accepts(Arrays.asList("GME", "NOPE")));
+            assertFalse(quoteStreams.accepts(Arrays.asList("GME", " ")));
+            assertFalse(quoteStreams.accepts(Collections.emptyList()));
+            assertThrows(IllegalArgumentException.class, () -> quoteStreams.subscribe(Collections.singletonList("NOPE")));
+        } finally {
+            quoteStreams.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsSubscribersOverTheLimit() {
+        QuoteStreams quoteStreams = new QuoteStreams(new QuoteBook("GME:225"), 1, 1000, 1000, 1, 10);
+        try {
+            assertNotNull(quoteStreams.subscribe(Collections.singletonList("GME")));
+            assertNull(quoteStreams.subscribe(Collections.singletonList("GME")));
+            assertEquals(1, quoteStreams.subscriberCount());
+        } finally {
+            quoteStreams.shutdown();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sherrif.of.nottingham.telemetry;
+
+import io.opentelemetry.api.metrics.common.Labels;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryFileWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rollsFilesAndWritesEveryRecordInOrder() throws IOException, InterruptedException {
+        TelemetryFileWriter writer = new TelemetryFileWriter(directory, 1024, 1000, 1);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(writer.append(batch(i)));
+            // let the writer go idle and flush, since only flushed bytes count towards the file size
+            Thread.sleep(5);
+        }
+        assertTrue(writer.append(new TelemetryRecordCodec.Batch()));
+        writer.shutdown();
+        assertEquals(1000, writer.writtenRecords());
+        assertEquals(0, writer.droppedRecords());
+
+        List<Path> files = files();
+        assertTrue(files.size() > 1, files.size() + " files");
+        for (Path file : files) {
+            assertTrue(file.getFileName().toString().matches("telemetry-" + ProcessHandle.current().pid() + "-\\d{6}\\.bin\\.gz"),
+                    file.getFileName().toString());
+        }
+        List<Long> points = new ArrayList<>();
+        for (Path file : files) {
+            points.addAll(epochNanos(file));
+        }
+        assertEquals(1000, points.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(i, (long) points.get(i));
+        }
+    }
+
+    @Test
+    void flushesAnUnfinishedFileOnceIdle() throws IOException, InterruptedException {
+        TelemetryFileWriter writer = new TelemetryFileWriter(directory, 1 << 20, 10, 10);
+        assertTrue(writer.append(batch(0)));
+        List<Long> points = new ArrayList<>();
+        for (int attempt = 0; attempt < 500 && points.size() < 10; attempt++) {
+            Thread.sleep(10);
+            List<Path> files = files();
+            if (!files.isEmpty()) {
+                points = flushed(files.get(0));
+            }
+        }
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), points);
+        writer.shutdown();
+    }
+
+    @Test
+    void dropsBatchesOnceShutDown() throws IOException {
+        TelemetryFileWriter writer = new TelemetryFileWriter(directory, 1024, 10, 10);
+        writer.shutdown();
+        assertFalse(writer.append(batch(0)));
+        assertEquals(10, writer.droppedRecords());
+        assertEquals(0, writer.writtenRecords());
+    }
+
+    @Test
+    void readsFilesEndingInAPartialRecord() throws IOException {
+        TelemetryFileWriter writer = new TelemetryFileWriter(directory, 1 << 20, 10, 10);
+        writer.append(batch(0));
+        writer.shutdown();
+        Path file = files().get(0);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThrows(EOFException.class, () -> epochNanos(file));
+        // the summary counts the file as truncated rather than failing
+        new TelemetryFileReader().read(file);
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the epoch nanos of every metric point in the file
+     */
+    private static List<Long> epochNanos(Path file) throws IOException {
+        List<Long> points = new ArrayList<>();
+        read(file, points);
+        return points;
+    }
+
+    /**
+     * @return the epoch nanos of the points flushed so far to a file still being written
+     */
+    private static List<Long> flushed(Path file) throws IOException {
+        List<Long> points = new ArrayList<>();
+        try {
+            read(file, points);
+        } catch (EOFException e) {
+            // the rest of the file is still in the writer's buffers
+        }
+        return points;
+    }
+
+    private static void read(Path file, List<Long> points) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            Object record;
+            while ((record = TelemetryRecordCodec.read(in)) != null) {
+                points.add(((TelemetryRecordCodec.MetricRecord) record).getEpochNanos());
+            }
+        }
+    }
+
+    /**
+     * @return ten metric points, numbered from ten times {@code index}
+     */
+    private static TelemetryRecordCodec.Batch batch(int index) {
+        TelemetryRecordCodec.Batch batch = new TelemetryRecordCodec.Batch();
+        for (int i = 0; i < 10; i++) {
+            batch.addMetricPoint("order-service", "orders", Labels.of("stock", "GME"), index * 10L + i, 1, i);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,118 @@
+package com.sherrif.of.nottingham.telemetry;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.common.Labels;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryRecordCodecTest {
+
+    @Test
+    void roundTripsASpan() throws IOException {
+        SpanData span = span("orderService/placeOrder", StatusCode.ERROR);
+        TelemetryRecordCodec.Batch batch = new TelemetryRecordCodec.Batch();
+        batch.addSpan(span);
+        assertEquals(1, batch.records());
+
+        DataInputStream in = input(batch);
+        TelemetryRecordCodec.SpanRecord record = (TelemetryRecordCodec.SpanRecord) TelemetryRecordCodec.read(in);
+        assertEquals("order-service", record.getService());
+        assertEquals("orderService/placeOrder", record.getName());
+        assertEquals(span.getTraceId(), record.getTraceId());
+        assertEquals(span.getSpanId(), record.getSpanId());
+        assertEquals(span.getParentSpanId(), record.getParentSpanId());
+        assertEquals(SpanKind.SERVER.ordinal(), record.getKind());
+        assertEquals(StatusCode.ERROR, record.getStatus());
+        assertEquals(span.getStartEpochNanos(), record.getStartEpochNanos());
+        assertEquals(span.getEndEpochNanos(), record.getEndEpochNanos());
+        assertNull(TelemetryRecordCodec.read(in));
+    }
+
+    @Test
+    void roundTripsMetricPointsWithTheirLabels() throws IOException {
+        TelemetryRecordCodec.Batch batch = new TelemetryRecordCodec.Batch();
+        batch.addMetricPoint("order-service", "orders", Labels.of("region", "us-east", "stock", "GME"), 17, 1, 42);
+        batch.addMetricPoint("order-service", "latency", Labels.empty(), 18, 5, 2.5);
+        assertEquals(2, batch.records());
+
+        DataInputStream in = input(batch);
+        TelemetryRecordCodec.MetricRecord first = (TelemetryRecordCodec.MetricRecord) TelemetryRecordCodec.read(in);
+        assertEquals("order-service", first.getService());
+        assertEquals("orders", first.getName());
+        assertEquals("region=us-east,stock=GME", first.getLabels());
+        assertEquals(17, first.getEpochNanos());
+        assertEquals(1, first.getCount());
+        assertEquals(42.0, first.getValue());
+        TelemetryRecordCodec.MetricRecord second = (TelemetryRecordCodec.MetricRecord) TelemetryRecordCodec.read(in);
+        assertEquals("latency", second.getName());
+        assertEquals("", second.getLabels());
+        assertEquals(5, second.getCount());
+        assertEquals(2.5, second.getValue());
+        assertNull(TelemetryRecordCodec.read(in));
+    }
+
+    @Test
+    void skipsRecordsOfAnUnknownType() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(4);
+        out.write(new byte[]{99, 1, 2, 3});
+        TelemetryRecordCodec.Batch batch = new TelemetryRecordCodec.Batch();
+        batch.addMetricPoint("order-service", "orders", Labels.empty(), 1, 1, 1);
+        batch.writeTo(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("orders", ((TelemetryRecordCodec.MetricRecord) TelemetryRecordCodec.read(in)).getName());
+        assertNull(TelemetryRecordCodec.read(in));
+    }
+
+    @Test
+    void rejectsATruncatedRecordAndAnInvalidLength() throws IOException {
+        TelemetryRecordCodec.Batch batch = new TelemetryRecordCodec.Batch();
+        batch.addMetricPoint("order-service", "orders", Labels.empty(), 1, 1, 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        batch.writeTo(bytes);
+        byte[] encoded = bytes.toByteArray();
+        // a length without its record is as truncated as a record cut short
+        for (int length = 4; length < encoded.length; length++) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Arrays.copyOf(encoded, length)));
+            assertThrows(EOFException.class, () -> TelemetryRecordCodec.read(in), "read " + length + " of " + encoded.length + " bytes");
+        }
+
+        DataInputStream empty = new DataInputStream(new ByteArrayInputStream(new byte[]{0, 0, 0, 0}));
+        assertThrows(IOException.class, () -> TelemetryRecordCodec.read(empty));
+    }
+
+    private static DataInputStream input(TelemetryRecordCodec.Batch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        batch.writeTo(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    static SpanData span(String name, StatusCode status) {
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .setResource(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "order-service")))
+                .build();
+        Span span = tracerProvider.get("test").spanBuilder(name).setSpanKind(SpanKind.SERVER).startSpan();
+        span.setStatus(status);
+        span.end();
+        return ((ReadableSpan) span).toSpanData();
+    }
+}
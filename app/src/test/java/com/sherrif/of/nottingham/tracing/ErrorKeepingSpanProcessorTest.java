@@ -0,0 +1,104 @@
+package com.sherrif.of.nottingham.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErrorKeepingSpanProcessorTest {
+
+    private final SpanNameSampler sampler = new SpanNameSampler();
+    private final RecordingProcessor exported = new RecordingProcessor();
+    private final SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+            .setSampler(sampler)
+            .addSpanProcessor(new ErrorKeepingSpanProcessor(exported, sampler))
+            .build();
+    private final Tracer tracer = tracerProvider.get("test");
+
+    @AfterEach
+    void shutDown() {
+        tracerProvider.shutdown();
+    }
+
+    @Test
+    void passesSampledSpansOn() {
+        sampler.configure("*=1", true);
+        end("sampled", StatusCode.OK);
+        assertEquals(1, exported.spans.size());
+        assertEquals("sampled", exported.spans.get(0).getName());
+    }
+
+    @Test
+    void exportsAnUnsampledSpanOnlyWhenItFails() {
+        sampler.configure("*=0", true);
+        end("succeeded", StatusCode.UNSET);
+        assertTrue(exported.spans.isEmpty());
+
+        end("failed", StatusCode.ERROR);
+        assertEquals(1, exported.spans.size());
+        ReadableSpan kept = exported.spans.get(0);
+        assertEquals("failed", kept.getName());
+        // exporters skip unsampled spans, so the kept one must claim to be sampled
+        assertTrue(kept.getSpanContext().isSampled());
+        assertTrue(kept.hasEnded());
+        assertEquals(StatusCode.ERROR, kept.toSpanData().getStatus().getStatusCode());
+    }
+
+    @Test
+    void cannotKeepErrorsOfSpansThatWereNotRecorded() {
+        sampler.configure("*=0", false);
+        end("failed", StatusCode.ERROR);
+        assertTrue(exported.spans.isEmpty());
+    }
+
+    private void end(String name, StatusCode status) {
+        Span span = tracer.spanBuilder(name).startSpan();
+        span.setStatus(status);
+        span.end();
+    }
+
+    private static final class RecordingProcessor implements SpanProcessor {
+        final List<ReadableSpan> spans = new ArrayList<>();
+
+        @Override
+        public void onStart(Context parentContext, ReadWriteSpan span) {
+        }
+
+        @Override
+        public boolean isStartRequired() {
+            return false;
+        }
+
+        @Override
+        public void onEnd(ReadableSpan span) {
+            spans.add(span);
+        }
+
+        @Override
+        public boolean isEndRequired() {
+            return true;
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode forceFlush() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
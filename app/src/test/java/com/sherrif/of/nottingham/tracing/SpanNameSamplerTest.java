@@ -0,0 +1,136 @@
+package com.sherrif.of.nottingham.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpanNameSamplerTest {
+
+    // the sampler decides on the low half of the trace ID
+    private static final String LOWEST_TRACE_ID = "0af7651916cd43dd0000000000000001";
+    private static final String HIGHEST_TRACE_ID = "0af7651916cd43ddffffffffffffffff";
+    private static final String JUST_BELOW_HALF_TRACE_ID = "0af7651916cd43dd3ff0000000000000";
+
+    private final SpanNameSampler sampler = new SpanNameSampler();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void shutDown() {
+        sampler.shutdown();
+    }
+
+    @Test
+    void parsesRatesAndSkipsCommentsAndBlanks() {
+        Map<String, Double> rates = SpanNameSampler.parse(" orderService/getQuote = 0.01,, # a comment ,*=1", ",");
+        assertEquals(2, rates.size());
+        assertEquals(0.01, (double) rates.get("orderService/getQuote"));
+        assertEquals(1.0, (double) rates.get("*"));
+        // only the last '=' separates the ratio
+        assertEquals(0.5, (double) SpanNameSampler.parse("a=b=0.5", ",").get("a=b"));
+        assertTrue(SpanNameSampler.parse(null, ",").isEmpty());
+        assertEquals(2, SpanNameSampler.parse("a=0\n# b=1\nc=1\n", "\n").size());
+    }
+
+    @Test
+    void rejectsMalformedAndOutOfRangeRates() {
+        for (String rates : new String[]{"a", "=0.5", "a=", "a=x", "a=-0.1", "a=1.5", "a=NaN"}) {
+            assertThrows(IllegalArgumentException.class, () -> sampler.configure(rates, false), rates);
+        }
+    }
+
+    @Test
+    void samplesRootsBelowTheTraceIdRatioBound() {
+        sampler.configure("a=0.5", false);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(Context.root(), LOWEST_TRACE_ID, "a"));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(Context.root(), JUST_BELOW_HALF_TRACE_ID, "a"));
+        assertEquals(SamplingDecision.DROP, decide(Context.root(), HIGHEST_TRACE_ID, "a"));
+
+        sampler.configure("a=0", false);
+        assertEquals(SamplingDecision.DROP, decide(Context.root(), LOWEST_TRACE_ID, "a"));
+        sampler.configure("a=1", false);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(Context.root(), HIGHEST_TRACE_ID, "a"));
+    }
+
+    @Test
+    void fallsBackToTheStarRateAndOtherwiseSamples() {
+        sampler.configure("a=1,*=0", false);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(Context.root(), HIGHEST_TRACE_ID, "a"));
+        assertEquals(SamplingDecision.DROP, decide(Context.root(), LOWEST_TRACE_ID, "b"));
+
+        sampler.configure("a=0", false);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(Context.root(), HIGHEST_TRACE_ID, "b"));
+    }
+
+    @Test
+    void followsTheParentsDecision() {
+        sampler.configure("*=0", false);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(parent(TraceFlags.getSampled()), LOWEST_TRACE_ID, "child"));
+        sampler.configure("*=1", false);
+        assertEquals(SamplingDecision.DROP, decide(parent(TraceFlags.getDefault()), LOWEST_TRACE_ID, "child"));
+    }
+
+    @Test
+    void recordsUnsampledSpansWhenKeepingErrors() {
+        sampler.configure("*=0", true);
+        assertEquals(SamplingDecision.RECORD_ONLY, decide(Context.root(), LOWEST_TRACE_ID, "a"));
+        assertEquals(SamplingDecision.RECORD_ONLY, decide(parent(TraceFlags.getDefault()), LOWEST_TRACE_ID, "a"));
+    }
+
+    @Test
+    void reloadsTheRatesFileWhenItChanges() throws Exception {
+        Path rates = directory.resolve("sampling.rates");
+        write(rates, "# drop everything\n*=0\n", 1_000_000);
+        sampler.watch(rates.toString(), 1);
+        assertEquals(SamplingDecision.DROP, decide(Context.root(), LOWEST_TRACE_ID, "a"));
+
+        write(rates, "*=1\n", 2_000_000);
+        for (int attempt = 0; attempt < 50 && decide(Context.root(), HIGHEST_TRACE_ID, "a") == SamplingDecision.DROP; attempt++) {
+            Thread.sleep(100);
+        }
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(Context.root(), HIGHEST_TRACE_ID, "a"));
+
+        // a broken file keeps the previous rates
+        write(rates, "*=2\n", 3_000_000);
+        Thread.sleep(1500);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(Context.root(), HIGHEST_TRACE_ID, "a"));
+    }
+
+    private SamplingDecision decide(Context parent, String traceId, String name) {
+        return sampler.shouldSample(parent, traceId, name, SpanKind.SERVER, Attributes.empty(), Collections.emptyList())
+                .getDecision();
+    }
+
+    private static Context parent(TraceFlags flags) {
+        SpanContext parent = SpanContext.create(LOWEST_TRACE_ID, "b7ad6b7169203331", flags, TraceState.getDefault());
+        return Span.wrap(parent).storeInContext(Context.root());
+    }
+
+    /**
+     * Writes the file with an explicit modification time, so a rewrite within the same second is
+     * still seen as a change.
+     */
+    private static void write(Path path, String contents, long modifiedMillis) throws IOException {
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modifiedMillis));
+    }
+}